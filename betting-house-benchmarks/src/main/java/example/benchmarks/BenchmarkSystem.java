@@ -0,0 +1,63 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.cluster.MemberStatus;
+import akka.cluster.typed.Cluster;
+import akka.cluster.typed.Join;
+import akka.persistence.testkit.PersistenceTestKitPlugin;
+import akka.persistence.testkit.PersistenceTestKitSnapshotPlugin;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+
+/**
+ * A single node betting-house cluster writing to the in-memory journal and snapshot store of
+ * akka-persistence-testkit, see {@code benchmark.conf}.
+ */
+final class BenchmarkSystem {
+
+    private static final Duration JOIN_TIMEOUT = Duration.ofSeconds(20);
+
+    private BenchmarkSystem() {
+    }
+
+    static ActorSystem<Void> start(String name) {
+        return start(name, ConfigFactory.empty());
+    }
+
+    /**
+     * @param overrides settings taking precedence over {@code benchmark.conf}
+     */
+    static ActorSystem<Void> start(String name, Config overrides) {
+        Config config = overrides
+                .withFallback(PersistenceTestKitPlugin.getInstance().config())
+                .withFallback(PersistenceTestKitSnapshotPlugin.config())
+                .withFallback(ConfigFactory.load("benchmark"));
+
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), name, config);
+
+        Cluster cluster = Cluster.get(system);
+        cluster.manager().tell(Join.create(cluster.selfMember().address()));
+        long deadline = System.nanoTime() + JOIN_TIMEOUT.toNanos();
+        while (cluster.selfMember().status() != MemberStatus.up()) {
+            if (System.nanoTime() > deadline) {
+                system.terminate();
+                throw new IllegalStateException("node didn't join itself within " + JOIN_TIMEOUT);
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        return system;
+    }
+
+    static void stop(ActorSystem<?> system) {
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,143 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.cluster.sharding.ShardRegion;
+import akka.cluster.sharding.typed.ClusterShardingQuery;
+import akka.cluster.sharding.typed.GetShardRegionState;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.cluster.sharding.typed.javadsl.Entity;
+import akka.cluster.sharding.typed.javadsl.EntityRef;
+import example.market.domain.Bet;
+import example.market.domain.Market;
+import example.market.domain.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Full bet lifecycles on sharded Bet, Market and Wallet entities: the bet is opened, validated against the market
+ * and the wallet, settled as a winner, reimbursed and closed. Run with {@code -t <n>} for n concurrent lifecycles.
+ * <p>
+ * After each iteration it prints the bet entities still resident and the heap in use after a GC, closed bets
+ * passivate themselves so they shouldn't pile up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class BetLifecycleBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final String MARKET_ID = "bench-market";
+    private static final int RESULT = 1;
+
+    private ActorSystem<Void> system;
+    private ClusterSharding sharding;
+
+    @State(Scope.Thread)
+    public static class Bettor {
+        String walletId;
+        String betPrefix;
+        long bets;
+
+        @Setup
+        public void setup(BetLifecycleBenchmark benchmark, ThreadParams threadParams) {
+            walletId = "bench-wallet-" + threadParams.getThreadIndex();
+            betPrefix = "bench-bet-" + threadParams.getThreadIndex() + "-" + System.nanoTime() + "-";
+            benchmark.sharding.entityRefFor(Wallet.typeKey, walletId)
+                    .<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.AddFunds(1_000_000_000, replyTo), TIMEOUT)
+                    .toCompletableFuture()
+                    .join();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("bet-benchmark");
+        sharding = ClusterSharding.get(system);
+        sharding.init(Entity.of(Market.typeKey, entityContext -> Market.create(entityContext.getEntityId())));
+        sharding.init(Entity.of(Wallet.typeKey, entityContext -> Wallet.create(entityContext.getEntityId())));
+        sharding.init(Entity.of(Bet.typeKey, entityContext -> Bet.create(entityContext.getEntityId(), entityContext.getShard())));
+
+        sharding.entityRefFor(Market.typeKey, MARKET_ID)
+                .<Market.Response>ask(replyTo -> new Market.Open(
+                        new Market.Fixture("bench-fixture", "home", "away"),
+                        new Market.Odds(2.0, 2.0, 2.0),
+                        OffsetDateTime.now(ZoneOffset.UTC),
+                        replyTo), TIMEOUT)
+                .toCompletableFuture()
+                .join();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportResidentBets() {
+        ShardRegion.CurrentShardRegionState regionState = AskPattern.<ClusterShardingQuery, ShardRegion.CurrentShardRegionState>ask(
+                        sharding.shardState(),
+                        replyTo -> new GetShardRegionState(Bet.typeKey, replyTo),
+                        TIMEOUT,
+                        system.scheduler())
+                .toCompletableFuture()
+                .join();
+        int resident = regionState.getShards().stream().mapToInt(shard -> shard.getEntityIds().size()).sum();
+
+        System.gc();
+        long usedHeap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        System.out.printf("%nresident bets: %d, heap used: %d MB%n", resident, usedHeap / (1024 * 1024));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    public Bet.State lifecycle(Bettor bettor) {
+        EntityRef<Bet.Command> bet = sharding.entityRefFor(Bet.typeKey, bettor.betPrefix + bettor.bets++);
+
+        bet.<Bet.Response>ask(replyTo -> new Bet.Open(bettor.walletId, MARKET_ID, 1.5, 1, RESULT, replyTo), TIMEOUT)
+                .toCompletableFuture()
+                .join();
+        awaitState(bet, state -> state instanceof Bet.OpenState open
+                && open.marketConfirmed() != null && open.marketConfirmed().isPresent()
+                && open.fundsConfirmed() != null && open.fundsConfirmed().isPresent());
+
+        bet.<Bet.Response>ask(replyTo -> new Bet.Settle(RESULT, replyTo), TIMEOUT)
+                .toCompletableFuture()
+                .join();
+        return awaitState(bet, state -> state instanceof Bet.ClosedState || state instanceof Bet.FailedState);
+    }
+
+    private static Bet.State awaitState(EntityRef<Bet.Command> bet, Predicate<Bet.State> done) {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (true) {
+            Bet.Response response = bet.<Bet.Response>ask(Bet.GetState::new, TIMEOUT).toCompletableFuture().join();
+            Bet.State state = ((Bet.CurrentState) response).state();
+            if (done.test(state)) {
+                return state;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("bet stuck in state " + state);
+            }
+        }
+    }
+}
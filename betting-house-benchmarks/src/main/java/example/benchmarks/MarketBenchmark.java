@@ -0,0 +1,87 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.persistence.testkit.javadsl.EventSourcedBehaviorTestKit;
+import example.market.domain.Market;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stream of {@link Market.Update}s with new odds on one open market. Each update is persisted, published to the
+ * {@link example.market.domain.MarketOddsView} and replied to before the next one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MarketBenchmark {
+
+    private static final int UPDATES = 100;
+
+    private ActorSystem<Void> system;
+    private EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> testKit;
+    private List<Optional<Market.Odds>> odds;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("market-benchmark");
+        testKit = EventSourcedBehaviorTestKit.create(system, Market.create("bench-market"));
+
+        odds = new ArrayList<>(UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            double shift = (i % 10) / 100.0;
+            odds.add(Optional.of(new Market.Odds(1.8 + shift, 2.4 - shift, 3.1)));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openMarket() {
+        testKit.clear();
+        testKit.<Market.Response>runCommand(replyTo -> new Market.Open(
+                new Market.Fixture("bench-fixture", "home", "away"),
+                new Market.Odds(1.8, 2.4, 3.1),
+                OffsetDateTime.now(ZoneOffset.UTC),
+                replyTo));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public void oddsUpdateStream(Blackhole blackhole) {
+        for (int i = 0; i < UPDATES; i++) {
+            Optional<Market.Odds> next = odds.get(i);
+            blackhole.consume(testKit.<Market.Response>runCommand(replyTo ->
+                    new Market.Update(next, Optional.empty(), Optional.empty(), replyTo)));
+        }
+    }
+
+    @Benchmark
+    public Object getState() {
+        return testKit.<Market.Response>runCommand(Market.GetState::new).reply();
+    }
+}
@@ -0,0 +1,108 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.persistence.testkit.javadsl.PersistenceTestKit;
+import example.market.domain.Market;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A trading feed on one market: {@link #CONCURRENT} {@link Market.Update}s in flight, one in two repeating the
+ * odds of the one before. Updates/sec acknowledged with and without {@code market.coalescing}, and printed at the
+ * end the events written per second and the latency from sending an update to its acknowledgement, which is when
+ * its odds reach the odds view and the SubscribeOdds streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MarketCoalescingBenchmark {
+
+    private static final int CONCURRENT = 200;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final String MARKET_ID = "feed-market";
+
+    @Param({"false", "true"})
+    public boolean coalescing;
+
+    private ActorSystem<Void> system;
+    private ActorRef<Market.Command> market;
+    private final Recorder latencies = new Recorder(3);
+    private long updates;
+    private long startNanos;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("market-coalescing-benchmark");
+        market = system.systemActorOf(Market.create(MARKET_ID, coalescing), MARKET_ID, Props.empty());
+        AskPattern.<Market.Command, Market.Response>ask(
+                        market,
+                        replyTo -> new Market.Open(
+                                new Market.Fixture("bench-fixture", "home", "away"),
+                                new Market.Odds(1.8, 2.4, 3.1),
+                                OffsetDateTime.now(ZoneOffset.UTC),
+                                replyTo),
+                        TIMEOUT,
+                        system.scheduler())
+                .toCompletableFuture()
+                .join();
+        startNanos = System.nanoTime();
+    }
+
+    @TearDown
+    public void tearDown() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        int events = PersistenceTestKit.create(system).persistedInStorage("market|" + MARKET_ID).size();
+        Histogram histogram = latencies.getIntervalHistogram();
+        System.out.printf("%ncoalescing=%s: %d updates, %d events, %.0f events/s, ack latency p50=%dus p99=%dus max=%dus%n",
+                coalescing, updates, events, events / seconds,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99), histogram.getMaxValue());
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT)
+    public void oddsFeed() {
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[CONCURRENT];
+        for (int i = 0; i < CONCURRENT; i++) {
+            // pairs of identical odds
+            double shift = ((i / 2) % 10) / 100.0;
+            Optional<Market.Odds> odds = Optional.of(new Market.Odds(1.8 + shift, 2.4 - shift, 3.1));
+            long sentNanos = System.nanoTime();
+            replies[i] = AskPattern.<Market.Command, Market.Response>ask(
+                            market,
+                            replyTo -> new Market.Update(odds, Optional.empty(), Optional.empty(), replyTo),
+                            TIMEOUT,
+                            system.scheduler())
+                    .thenAccept(reply -> latencies.recordValue((System.nanoTime() - sentNanos) / 1000))
+                    .toCompletableFuture();
+        }
+        CompletableFuture.allOf(replies).join();
+        updates += CONCURRENT;
+    }
+}
@@ -0,0 +1,95 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.kafka.ProducerSettings;
+import akka.kafka.javadsl.SendProducer;
+import akka.persistence.query.Offset;
+import akka.projection.eventsourced.EventEnvelope;
+import example.market.domain.Market;
+import example.projection.to.kafka.MarketProjectionGroupedHandler;
+import example.projection.to.kafka.MarketProjectionHandler;
+import example.projection.to.kafka.StandInProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The market projection handlers publishing to a {@link StandInProducer} that acks right away: one send per event,
+ * as {@code atLeastOnceAsync} does, against one send of the whole group. It measures the handler and the
+ * {@link SendProducer} overhead, not the broker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MarketProjectionKafkaBenchmark {
+
+    private static final int GROUP = 500;
+    private static final String TOPIC = "market-projection";
+
+    private ActorSystem<Void> system;
+    private SendProducer<String, byte[]> producer;
+    private MarketProjectionHandler handler;
+    private MarketProjectionGroupedHandler groupedHandler;
+    private List<EventEnvelope<Market.Event>> envelopes;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("market-projection-benchmark");
+        ProducerSettings<String, byte[]> settings =
+                ProducerSettings.create(system, new StringSerializer(), new ByteArraySerializer())
+                        .withProducer(new StandInProducer());
+        producer = new SendProducer<>(settings, system);
+
+        handler = new MarketProjectionHandler(system, TOPIC, producer);
+        groupedHandler = new MarketProjectionGroupedHandler(system, TOPIC, producer);
+
+        envelopes = new ArrayList<>(GROUP);
+        for (int i = 0; i < GROUP; i++) {
+            String marketId = "market-" + (i % 50);
+            Market.Event event = new Market.Updated(
+                    marketId,
+                    Optional.of(new Market.Odds(1.8, 2.4, 3.1)),
+                    Optional.empty());
+            envelopes.add(EventEnvelope.create(Offset.sequence(i), "market|" + marketId, i, event, 0L));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        producer.close().toCompletableFuture().join();
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP)
+    public void perEnvelope() {
+        for (EventEnvelope<Market.Event> envelope : envelopes) {
+            handler.process(envelope).toCompletableFuture().join();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GROUP)
+    public void grouped() {
+        groupedHandler.process(envelopes).toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,99 @@
+package example.benchmarks;
+
+import akka.NotUsed;
+import akka.actor.typed.ActorSystem;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import example.entry.MarketServiceImplSharding;
+import example.market.grpc.MarketProto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A multi-market feed through {@link MarketServiceImplSharding#update}: {@link #UPDATES} updates spread round robin
+ * over {@link #MARKETS} sharded markets per call, at several {@code services.market.update-parallelism}.
+ * Any response that isn't ACCEPTED fails the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class MarketUpdateStreamBenchmark {
+
+    private static final int MARKETS = 100;
+    private static final int UPDATES = 2000;
+
+    @Param({"1", "10", "50"})
+    public int parallelism;
+
+    private ActorSystem<Void> system;
+    private MarketServiceImplSharding service;
+    private List<MarketProto.MarketData> feed;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("market-update-stream-benchmark");
+        service = new MarketServiceImplSharding(system, ClusterSharding.get(system), system.executionContext(), parallelism);
+
+        for (int i = 0; i < MARKETS; i++) {
+            MarketProto.Response opened = service.open(MarketProto.MarketData.newBuilder()
+                            .setMarketId("feed-market-" + i)
+                            .setFixture(MarketProto.FixtureData.newBuilder().setId("fixture-" + i).setHomeTeam("home").setAwayTeam("away"))
+                            .setOdds(MarketProto.OddsData.newBuilder().setWinHome(1.8).setWinAway(2.4).setTie(3.1))
+                            .setOpensAt(System.currentTimeMillis())
+                            .build())
+                    .toCompletableFuture()
+                    .join();
+            if (!opened.getMessage().equals("initialized")) {
+                throw new IllegalStateException(opened.getMessage());
+            }
+        }
+
+        feed = new ArrayList<>(UPDATES);
+        for (int i = 0; i < UPDATES; i++) {
+            double shift = (i % 10) / 100.0;
+            feed.add(MarketProto.MarketData.newBuilder()
+                    .setMarketId("feed-market-" + (i % MARKETS))
+                    .setOdds(MarketProto.OddsData.newBuilder().setWinHome(1.8 + shift).setWinAway(2.4 - shift).setTie(3.1))
+                    .setOpensAt(System.currentTimeMillis())
+                    .build());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(UPDATES)
+    public void multiMarketFeed() {
+        Source<MarketProto.MarketData, NotUsed> in = Source.from(feed);
+        service.update(in)
+                .runWith(Sink.foreach(response -> {
+                    if (response.getOutcome() != MarketProto.Response.Outcome.ACCEPTED) {
+                        throw new IllegalStateException(response.getMarketId() + ": " + response.getMessage());
+                    }
+                }), system)
+                .toCompletableFuture()
+                .join();
+    }
+}
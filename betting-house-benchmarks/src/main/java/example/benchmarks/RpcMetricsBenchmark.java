@@ -0,0 +1,99 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import com.typesafe.config.ConfigFactory;
+import example.entry.MarketServiceImplSharding;
+import example.entry.RpcMetrics;
+import example.market.grpc.MarketProto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link RpcMetrics} adds to a call, with {@code rpc-metrics} on and off:
+ * <ul>
+ *     <li>{@code timeCompleted}: timing a call already answered, the cost of the instrumentation alone</li>
+ *     <li>{@code marketGetState}: MarketService/GetState through sharding on an open market, the hot path
+ *     it instruments</li>
+ * </ul>
+ * Run with {@code -t} for recorders written by concurrent threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RpcMetricsBenchmark {
+
+    private static final String MARKET_ID = "metrics-market";
+    private static final CompletionStage<String> ANSWERED = CompletableFuture.completedFuture("accepted");
+
+    @Param({"false", "true"})
+    public boolean enabled;
+
+    private ActorSystem<Void> system;
+    private RpcMetrics.Rpc rpc;
+    private MarketServiceImplSharding service;
+    private MarketProto.MarketId marketId;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("rpc-metrics-benchmark",
+                ConfigFactory.parseString("rpc-metrics.enabled = " + enabled));
+        rpc = RpcMetrics.get(system).rpc("Benchmark", "Completed");
+        service = new MarketServiceImplSharding(system, ClusterSharding.get(system), system.executionContext());
+
+        MarketProto.Response opened = service.open(MarketProto.MarketData.newBuilder()
+                        .setMarketId(MARKET_ID)
+                        .setFixture(MarketProto.FixtureData.newBuilder().setId("fixture").setHomeTeam("home").setAwayTeam("away"))
+                        .setOdds(MarketProto.OddsData.newBuilder().setWinHome(1.8).setWinAway(2.4).setTie(3.1))
+                        .setOpensAt(System.currentTimeMillis())
+                        .build())
+                .toCompletableFuture()
+                .join();
+        if (!opened.getMessage().equals("initialized")) {
+            throw new IllegalStateException(opened.getMessage());
+        }
+        marketId = MarketProto.MarketId.newBuilder().setMarketId(MARKET_ID).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        RpcMetrics.get(system).latencies().forEach(latencies ->
+                System.out.printf("%n%s/%s %s: %d calls, p50=%dus p99=%dus%n",
+                        latencies.service(), latencies.method(), latencies.outcome().label(),
+                        latencies.histogram().getTotalCount(),
+                        latencies.histogram().getValueAtPercentile(50),
+                        latencies.histogram().getValueAtPercentile(99)));
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    public String timeCompleted() {
+        return rpc.time(() -> ANSWERED, "accepted"::equals)
+                .toCompletableFuture()
+                .join();
+    }
+
+    @Benchmark
+    public MarketProto.MarketData marketGetState() {
+        return service.getState(marketId)
+                .toCompletableFuture()
+                .join();
+    }
+}
@@ -0,0 +1,142 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import akka.serialization.Serializer;
+import akka.serialization.Serializers;
+import example.market.domain.Bet;
+import example.market.domain.Market;
+import example.market.domain.Wallet;
+import example.market.domain.serialization.DomainProtobufSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * jackson-cbor against {@link DomainProtobufSerializer} on the events written most often. The serialized size of
+ * each message is printed in the setup of its run, along with the bytes a bet lifecycle writes to the journal with
+ * the events embedding the whole state, as older versions wrote them, and with the marker events.
+ */
+@SuppressWarnings("deprecation")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SerializationBenchmark {
+
+    // akka.actor.serialization-identifiers in the akka-serialization-jackson reference.conf
+    private static final int JACKSON_CBOR_ID = 33;
+
+    @Param({"jackson-cbor", "protobuf"})
+    public String format;
+
+    @Param({"bet-opened", "bet-market-confirmed", "bet-odds-confirmed", "market-updated", "wallet-funds-reserved"})
+    public String message;
+
+    private ActorSystem<Void> system;
+    private Serialization serialization;
+    private Serializer serializer;
+    private Object value;
+    private String manifest;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("serialization-benchmark");
+        serialization = SerializationExtension.get(Adapter.toClassic(system));
+
+        value = message(message);
+        serializer = "protobuf".equals(format)
+                ? serialization.findSerializerFor(value)
+                : serialization.serializerByIdentity().apply(JACKSON_CBOR_ID);
+        if ("protobuf".equals(format) && !(serializer instanceof DomainProtobufSerializer)) {
+            throw new IllegalStateException(value.getClass() + " is bound to " + serializer.getClass());
+        }
+        manifest = Serializers.manifestFor(serializer, value);
+        bytes = serializer.toBinary(value);
+
+        System.out.printf("%n%s with %s: %d bytes%n", message, format, bytes.length);
+        System.out.printf("bet lifecycle with %s: %d bytes with the state in the events, %d bytes with markers%n",
+                format, journalBytes(fatLifecycle()), journalBytes(slimLifecycle()));
+    }
+
+    private int journalBytes(List<Bet.Event> events) {
+        int total = 0;
+        for (Bet.Event event : events) {
+            Serializer eventSerializer = "protobuf".equals(format)
+                    ? serialization.findSerializerFor(event)
+                    : serializer;
+            total += eventSerializer.toBinary(event).length;
+        }
+        return total;
+    }
+
+    /**
+     * The events of a bet opened, validated and closed as a winner, as older versions wrote them.
+     */
+    private static List<Bet.Event> fatLifecycle() {
+        Bet.Status status = new Bet.Status("bet-1", "wallet-1", "market-1", 2.5, 100, 1);
+        Bet.OpenState open = new Bet.OpenState(status, Optional.empty(), Optional.empty());
+        return List.of(
+                new Bet.Opened("bet-1", "wallet-1", "market-1", 2.5, 100, 1),
+                new Bet.MarketConfirmed(open),
+                new Bet.FundsGranted(open.copyMarketConfirmed(true)),
+                new Bet.ValidationsPassed(open.copyMarketConfirmed(true).copyFundsConfirmed(true)),
+                new Bet.Closed());
+    }
+
+    private static List<Bet.Event> slimLifecycle() {
+        return List.of(
+                new Bet.Opened("bet-1", "wallet-1", "market-1", 2.5, 100, 1),
+                new Bet.OddsConfirmed(),
+                new Bet.FundsConfirmed(),
+                new Bet.Validated(),
+                new Bet.Closed());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.toBinary(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serialization.deserialize(bytes, serializer.identifier(), manifest).get();
+    }
+
+    private static Object message(String name) {
+        Bet.Status status = new Bet.Status("bet-1", "wallet-1", "market-1", 2.5, 100, 1);
+        return switch (name) {
+            case "bet-opened" -> new Bet.Opened("bet-1", "wallet-1", "market-1", 2.5, 100, 1);
+            case "bet-market-confirmed" ->
+                    new Bet.MarketConfirmed(new Bet.OpenState(status, Optional.of(true), Optional.empty()));
+            case "bet-odds-confirmed" -> new Bet.OddsConfirmed();
+            case "market-updated" ->
+                    new Market.Updated("market-1", Optional.of(new Market.Odds(1.8, 2.4, 3.1)), Optional.empty());
+            case "wallet-funds-reserved" -> new Wallet.FundsReserved(100);
+            default -> throw new IllegalArgumentException("unknown message " + name);
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorSystem;
+import akka.persistence.testkit.javadsl.EventSourcedBehaviorTestKit;
+import example.market.domain.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bursts of {@link Wallet.AddFunds} and {@link Wallet.ReserveFunds} on one wallet, each command persisted and
+ * replied to before the next one is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class WalletBenchmark {
+
+    private static final int BURST = 100;
+
+    private ActorSystem<Void> system;
+    private EventSourcedBehaviorTestKit<Wallet.Command, Wallet.Event, Wallet.State> testKit;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("wallet-benchmark");
+        testKit = EventSourcedBehaviorTestKit.create(system, Wallet.create("bench-wallet", false));
+    }
+
+    @Setup(Level.Iteration)
+    public void clearJournal() {
+        testKit.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * BURST)
+    public void reserveAddBurst(Blackhole blackhole) {
+        for (int i = 0; i < BURST; i++) {
+            blackhole.consume(testKit.<Wallet.UpdatedResponse>runCommand(replyTo -> new Wallet.AddFunds(10, replyTo)));
+            blackhole.consume(testKit.<Wallet.UpdatedResponse>runCommand(replyTo -> new Wallet.ReserveFunds(10, replyTo)));
+        }
+    }
+
+    /**
+     * Reservations on an empty wallet, every one of them persists a {@link Wallet.FundsReservationDenied}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void deniedReservationBurst(Blackhole blackhole) {
+        for (int i = 0; i < BURST; i++) {
+            blackhole.consume(testKit.<Wallet.UpdatedResponse>runCommand(replyTo -> new Wallet.ReserveFunds(10, replyTo)));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package example.benchmarks;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import example.market.domain.Wallet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commands/sec on a single wallet with {@link #CONCURRENT} {@link Wallet.ReserveFunds} and {@link Wallet.AddFunds}
+ * in flight, one write per command against group commit. The in-memory journal of the persistence testkit acks
+ * writes right away, against a real journal the gap grows with the write latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class WalletGroupCommitBenchmark {
+
+    private static final int CONCURRENT = 500;
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    @Param({"false", "true"})
+    public boolean groupCommit;
+
+    private ActorSystem<Void> system;
+    private ActorRef<Wallet.Command> wallet;
+
+    @Setup
+    public void setup() {
+        system = BenchmarkSystem.start("wallet-group-commit-benchmark");
+        wallet = system.systemActorOf(Wallet.create("hot-wallet", groupCommit), "hot-wallet", Props.empty());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSystem.stop(system);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT)
+    public void concurrentCommands() {
+        CompletableFuture<?>[] replies = new CompletableFuture<?>[CONCURRENT];
+        for (int i = 0; i < CONCURRENT; i++) {
+            boolean add = i % 2 == 0;
+            replies[i] = AskPattern.<Wallet.Command, Wallet.UpdatedResponse>ask(
+                            wallet,
+                            replyTo -> add ? new Wallet.AddFunds(10, replyTo) : new Wallet.ReserveFunds(10, replyTo),
+                            TIMEOUT,
+                            system.scheduler())
+                    .toCompletableFuture();
+        }
+        CompletableFuture.allOf(replies).join();
+    }
+}
@@ -0,0 +1,319 @@
+package example.benchmarks.load;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.grpc.GrpcClientSettings;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import betting.house.projection.proto.BetProjectionProto;
+import betting.house.projection.proto.BetProjectionServiceClient;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import example.bet.grpc.BetProto;
+import example.bet.grpc.BetServiceClient;
+import example.market.grpc.MarketProto;
+import example.market.grpc.MarketServiceClient;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Load generator for a betting-house node started with {@code -Dconfig.resource=bench.conf}. It calls the
+ * services through the generated Akka gRPC clients, and the wallet through its HTTP routes, then prints the
+ * latency percentiles and the throughput of each RPC. The settings are in {@code load-generator.conf}.
+ */
+public class LoadGenerator {
+
+    private record Rpc(RpcStats stats, Supplier<CompletionStage<?>> call) {
+    }
+
+    private final ActorSystem<Void> system;
+    private final Config config;
+    private final Executor executor;
+
+    private final BetServiceClient betClient;
+    private final MarketServiceClient marketClient;
+    private final BetProjectionServiceClient betProjectionClient;
+    private final String walletUri;
+
+    private final List<String> marketIds = new ArrayList<>();
+    private final List<String> walletIds = new ArrayList<>();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong betSequence = new AtomicLong();
+    private final AtomicReferenceArray<String> openedBets = new AtomicReferenceArray<>(4096);
+
+    private final List<Rpc> rpcs = new ArrayList<>();
+
+    public static void main(String[] args) {
+        Config config = ConfigFactory.load("load-generator");
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "load-generator", config);
+        try {
+            new LoadGenerator(system, config.getConfig("load-generator")).run();
+        } finally {
+            system.terminate();
+        }
+    }
+
+    LoadGenerator(ActorSystem<Void> system, Config config) {
+        this.system = system;
+        this.config = config;
+        this.executor = system.executionContext();
+
+        String host = config.getString("host");
+        this.betClient = BetServiceClient.create(
+                GrpcClientSettings.connectToServiceAt(host, config.getInt("bet-port"), system).withTls(false), system);
+        this.marketClient = MarketServiceClient.create(
+                GrpcClientSettings.connectToServiceAt(host, config.getInt("market-port"), system).withTls(false), system);
+        this.betProjectionClient = BetProjectionServiceClient.create(
+                GrpcClientSettings.connectToServiceAt(host, config.getInt("bet-projection-port"), system).withTls(false), system);
+        this.walletUri = "http://" + host + ":" + config.getInt("wallet-port") + "/wallet";
+
+        Map<String, Supplier<CompletionStage<?>>> available = new LinkedHashMap<>();
+        available.put("bet-open", this::openBet);
+        available.put("bet-get-state", this::getBetState);
+        available.put("market-get-state", this::getMarketState);
+        available.put("wallet-check-funds", this::checkFunds);
+        available.put("bet-projection", this::getBetByMarket);
+        for (String name : config.getStringList("rpcs")) {
+            Supplier<CompletionStage<?>> call = available.get(name);
+            if (call == null) {
+                throw new IllegalArgumentException("unknown rpc [" + name + "], expected one of " + available.keySet());
+            }
+            rpcs.add(new Rpc(new RpcStats(name), call));
+        }
+    }
+
+    void run() {
+        prepare();
+
+        Duration rampUp = config.getDuration("ramp-up");
+        Duration duration = config.getDuration("duration");
+        long start = System.nanoTime();
+        long measureFrom = start + rampUp.toNanos();
+        long end = measureFrom + duration.toNanos();
+
+        String model = config.getString("model");
+        System.out.printf("%s model, ramp up %s, measuring %s, rpcs %s%n",
+                model, rampUp, duration, config.getStringList("rpcs"));
+        switch (model) {
+            case "closed" -> runClosed(config.getInt("concurrency"), start, measureFrom, end);
+            case "open" -> runOpen(config.getInt("rate"), start, measureFrom, end);
+            default -> throw new IllegalArgumentException("model must be closed or open, not [" + model + "]");
+        }
+
+        report(duration);
+
+        betClient.close().toCompletableFuture().join();
+        marketClient.close().toCompletableFuture().join();
+        betProjectionClient.close().toCompletableFuture().join();
+    }
+
+    /**
+     * Opens the markets and funds the wallets the requests go to.
+     */
+    private void prepare() {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < config.getInt("markets"); i++) {
+            String marketId = "load-market-" + runId + "-" + i;
+            marketIds.add(marketId);
+            pending.add(marketClient.open(MarketProto.MarketData.newBuilder()
+                            .setMarketId(marketId)
+                            .setFixture(MarketProto.FixtureData.newBuilder()
+                                    .setId("load-fixture-" + i)
+                                    .setHomeTeam("home")
+                                    .setAwayTeam("away"))
+                            .setOdds(MarketProto.OddsData.newBuilder()
+                                    .setWinHome(2.0)
+                                    .setWinAway(2.0)
+                                    .setTie(2.0))
+                            .setOpensAt(System.currentTimeMillis())
+                            .build())
+                    .toCompletableFuture());
+        }
+        for (int i = 0; i < config.getInt("wallets"); i++) {
+            String walletId = "load-wallet-" + runId + "-" + i;
+            walletIds.add(walletId);
+            pending.add(Http.get(system)
+                    .singleRequest(HttpRequest.POST(walletUri + "/add?walletId=" + walletId + "&funds=100000000"))
+                    .thenCompose(this::discard)
+                    .toCompletableFuture());
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Each client sends its next request once the previous one is answered. The clients start one after the other
+     * over the ramp up.
+     */
+    private void runClosed(int concurrency, long start, long measureFrom, long end) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(concurrency);
+        long rampUp = measureFrom - start;
+        for (int i = 0; i < concurrency; i++) {
+            long delay = rampUp * i / concurrency;
+            scheduler.schedule(() -> nextRequest(measureFrom, end, running, done), delay, TimeUnit.NANOSECONDS);
+        }
+        done.join();
+        scheduler.shutdown();
+    }
+
+    private void nextRequest(long measureFrom, long end, AtomicInteger running, CompletableFuture<Void> done) {
+        long sent = System.nanoTime();
+        if (sent >= end) {
+            if (running.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+            return;
+        }
+        Rpc rpc = pick();
+        call(rpc).whenCompleteAsync((result, failure) -> {
+            if (sent >= measureFrom) {
+                rpc.stats().record(sent, System.nanoTime(), failure);
+            }
+            nextRequest(measureFrom, end, running, done);
+        }, executor);
+    }
+
+    /**
+     * Requests are sent on schedule whatever the response times. The latency counts from when a request was due, not
+     * from when it was actually sent, so the time spent waiting behind a slow server isn't hidden.
+     */
+    private void runOpen(int rate, long start, long measureFrom, long end) {
+        LongAdder inFlight = new LongAdder();
+        double rampUpSeconds = (measureFrom - start) / 1e9;
+        long due = start;
+        while (due < end) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            long intended = due;
+            Rpc rpc = pick();
+            inFlight.increment();
+            call(rpc).whenComplete((result, failure) -> {
+                if (intended >= measureFrom) {
+                    rpc.stats().record(intended, System.nanoTime(), failure);
+                }
+                inFlight.decrement();
+            });
+
+            double elapsed = (due - start) / 1e9;
+            double currentRate = elapsed < rampUpSeconds ? Math.max(1.0, rate * elapsed / rampUpSeconds) : rate;
+            due += (long) (1e9 / currentRate);
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.sum() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private void report(Duration duration) {
+        double seconds = duration.toMillis() / 1000.0;
+        System.out.printf("%n%-20s %10s %8s %12s %9s %9s %9s %9s %9s%n",
+                "rpc", "ok", "errors", "ok/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Rpc rpc : rpcs) {
+            Histogram latencies = rpc.stats().takeLatencies();
+            long errors = rpc.stats().takeErrors();
+            System.out.printf("%-20s %10d %8d %12.1f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    rpc.stats().name(),
+                    latencies.getTotalCount(),
+                    errors,
+                    latencies.getTotalCount() / seconds,
+                    latencies.getValueAtPercentile(50) / 1000.0,
+                    latencies.getValueAtPercentile(90) / 1000.0,
+                    latencies.getValueAtPercentile(99) / 1000.0,
+                    latencies.getValueAtPercentile(99.9) / 1000.0,
+                    latencies.getMaxValue() / 1000.0);
+        }
+    }
+
+    private Rpc pick() {
+        return rpcs.get(ThreadLocalRandom.current().nextInt(rpcs.size()));
+    }
+
+    private static CompletionStage<?> call(Rpc rpc) {
+        try {
+            return rpc.call().get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletionStage<?> openBet() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sequence = betSequence.incrementAndGet();
+        String betId = "load-bet-" + runId + "-" + sequence;
+        return betClient.open(BetProto.Bet.newBuilder()
+                        .setBetId(betId)
+                        .setWalletId(walletIds.get(random.nextInt(walletIds.size())))
+                        .setMarketId(marketIds.get(random.nextInt(marketIds.size())))
+                        .setOdds(1.5)
+                        .setStake(1)
+                        .setResult(random.nextInt(3))
+                        .build())
+                .thenApply(response -> {
+                    openedBets.set((int) (sequence % openedBets.length()), betId);
+                    return response;
+                });
+    }
+
+    private CompletionStage<?> getBetState() {
+        String betId = openedBets.get(ThreadLocalRandom.current().nextInt(openedBets.length()));
+        return betClient.getState(BetProto.BetId.newBuilder()
+                .setBetId(betId != null ? betId : "load-bet-" + runId + "-none")
+                .build());
+    }
+
+    private CompletionStage<?> getMarketState() {
+        return marketClient.getState(MarketProto.MarketId.newBuilder()
+                .setMarketId(randomMarket())
+                .build());
+    }
+
+    private CompletionStage<?> checkFunds() {
+        String walletId = walletIds.get(ThreadLocalRandom.current().nextInt(walletIds.size()));
+        return Http.get(system)
+                .singleRequest(HttpRequest.GET(walletUri + "?walletId=" + walletId))
+                .thenCompose(this::discard);
+    }
+
+    private CompletionStage<?> getBetByMarket() {
+        return betProjectionClient.getBetByMarket(BetProjectionProto.MarketIdsBet.newBuilder()
+                .setMarketId(randomMarket())
+                .build());
+    }
+
+    private String randomMarket() {
+        return marketIds.get(ThreadLocalRandom.current().nextInt(marketIds.size()));
+    }
+
+    private CompletionStage<HttpResponse> discard(HttpResponse response) {
+        return response.discardEntityBytes(system).completionStage().thenApply(done -> {
+            if (!response.status().isSuccess()) {
+                throw new IllegalStateException("wallet answered " + response.status());
+            }
+            return response;
+        });
+    }
+}
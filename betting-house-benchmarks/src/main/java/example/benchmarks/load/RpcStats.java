@@ -0,0 +1,43 @@
+package example.benchmarks.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and errors of one RPC, recorded from many threads.
+ */
+final class RpcStats {
+
+    private final String name;
+    private final Recorder latencies = new Recorder(3);
+    private final LongAdder errors = new LongAdder();
+
+    RpcStats(String name) {
+        this.name = name;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void record(long startNanos, long endNanos, Throwable failure) {
+        if (failure != null) {
+            errors.increment();
+        } else {
+            latencies.recordValue(Math.max(0, (endNanos - startNanos) / 1_000));
+        }
+    }
+
+    /**
+     * Latencies in microseconds recorded since the last call.
+     */
+    Histogram takeLatencies() {
+        return latencies.getIntervalHistogram();
+    }
+
+    long takeErrors() {
+        return errors.sumThenReset();
+    }
+}
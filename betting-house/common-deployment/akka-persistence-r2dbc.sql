@@ -0,0 +1,89 @@
+-- Tables of akka-persistence-r2dbc and akka-projection-r2dbc, used with persistence-backend = r2dbc.
+-- Same events, snapshots and offsets as akka-persistence.sql and akka-projection.sql: one row per event
+-- keyed by (persistence_id, seq_nr), the latest snapshot per entity, one offset per projection key.
+-- The tags are an array on the event instead of the event_tag table, and the projections read by slice
+-- (a hash of the persistence id) and db_timestamp instead of the global ordering column.
+-- The r2dbc_ prefix keeps them apart from the tables of the JDBC plugins in the same database,
+-- the table settings under akka.persistence.r2dbc and akka.projection.r2dbc name them.
+DROP TABLE IF EXISTS public.r2dbc_event_journal;
+DROP TABLE IF EXISTS public.r2dbc_snapshot;
+DROP TABLE IF EXISTS public.r2dbc_projection_offset_store;
+DROP TABLE IF EXISTS public.r2dbc_projection_timestamp_offset_store;
+DROP TABLE IF EXISTS public.r2dbc_projection_management;
+
+CREATE TABLE IF NOT EXISTS public.r2dbc_event_journal(
+  slice INT NOT NULL,
+  entity_type VARCHAR(255) NOT NULL,
+  persistence_id VARCHAR(255) NOT NULL,
+  seq_nr BIGINT NOT NULL,
+  db_timestamp timestamp with time zone NOT NULL,
+
+  event_ser_id INTEGER NOT NULL,
+  event_ser_manifest VARCHAR(255) NOT NULL,
+  event_payload BYTEA NOT NULL,
+
+  deleted BOOLEAN DEFAULT FALSE NOT NULL,
+  writer VARCHAR(255) NOT NULL,
+  adapter_manifest VARCHAR(255),
+  tags TEXT ARRAY,
+
+  meta_ser_id INTEGER,
+  meta_ser_manifest VARCHAR(255),
+  meta_payload BYTEA,
+
+  PRIMARY KEY(persistence_id, seq_nr)
+);
+
+-- eventsBySlices
+CREATE INDEX IF NOT EXISTS r2dbc_event_journal_slice_idx ON public.r2dbc_event_journal(slice, entity_type, db_timestamp, seq_nr);
+
+CREATE TABLE IF NOT EXISTS public.r2dbc_snapshot(
+  slice INT NOT NULL,
+  entity_type VARCHAR(255) NOT NULL,
+  persistence_id VARCHAR(255) NOT NULL,
+  seq_nr BIGINT NOT NULL,
+  db_timestamp timestamp with time zone,
+  write_timestamp BIGINT NOT NULL,
+  ser_id INTEGER NOT NULL,
+  ser_manifest VARCHAR(255) NOT NULL,
+  snapshot BYTEA NOT NULL,
+  tags TEXT ARRAY,
+  meta_ser_id INTEGER,
+  meta_ser_manifest VARCHAR(255),
+  meta_payload BYTEA,
+
+  PRIMARY KEY(persistence_id)
+);
+
+CREATE INDEX IF NOT EXISTS r2dbc_snapshot_slice_idx ON public.r2dbc_snapshot(slice, entity_type, db_timestamp);
+
+CREATE TABLE IF NOT EXISTS public.r2dbc_projection_offset_store (
+  projection_name VARCHAR(255) NOT NULL,
+  projection_key VARCHAR(255) NOT NULL,
+  current_offset VARCHAR(255) NOT NULL,
+  manifest VARCHAR(32) NOT NULL,
+  mergeable BOOLEAN NOT NULL,
+  last_updated BIGINT NOT NULL,
+  PRIMARY KEY(projection_name, projection_key)
+);
+
+CREATE TABLE IF NOT EXISTS public.r2dbc_projection_timestamp_offset_store (
+  projection_name VARCHAR(255) NOT NULL,
+  projection_key VARCHAR(255) NOT NULL,
+  slice INT NOT NULL,
+  persistence_id VARCHAR(255) NOT NULL,
+  seq_nr BIGINT NOT NULL,
+  -- db_timestamp of the event
+  timestamp_offset timestamp with time zone NOT NULL,
+  -- when the projection processed it
+  timestamp_consumed timestamp with time zone NOT NULL,
+  PRIMARY KEY(slice, projection_name, timestamp_offset, persistence_id, seq_nr)
+);
+
+CREATE TABLE IF NOT EXISTS public.r2dbc_projection_management (
+  projection_name VARCHAR(255) NOT NULL,
+  projection_key VARCHAR(255) NOT NULL,
+  paused BOOLEAN NOT NULL,
+  last_updated BIGINT NOT NULL,
+  PRIMARY KEY(projection_name, projection_key)
+);
@@ -20,4 +20,11 @@ CREATE TABLE IF NOT EXISTS public.akka_projection_management (
   paused BOOLEAN NOT NULL,
   last_updated BIGINT NOT NULL,
   PRIMARY KEY(projection_name, projection_key)
-);
\ No newline at end of file
+);
+DROP table if exists public.projection_tags;
+
+CREATE TABLE IF NOT EXISTS public.projection_tags (
+  projection_name VARCHAR(255) NOT NULL,
+  tags INT NOT NULL,
+  PRIMARY KEY(projection_name)
+);
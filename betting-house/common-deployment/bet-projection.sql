@@ -4,7 +4,39 @@ CREATE TABLE IF NOT EXISTS public.bet_wallet_market(
     betId VARCHAR(255) NOT NULL,
     walletId VARCHAR(255) NOT NULL,
     marketId VARCHAR(255) NOT NULL,
-    odds REAL NOT NULL,
+    odds DOUBLE PRECISION NOT NULL,
     stake INTEGER NOT NULL,
     result INTEGER NOT NULL,
-    PRIMARY KEY (betId));
\ No newline at end of file
+    -- open until the bet projection sees the bet closed, settled, cancelled or failed
+    status VARCHAR(16) NOT NULL DEFAULT 'open',
+    PRIMARY KEY (betId));
+
+-- maintained incrementally by the bet projection, in the same transaction as bet_wallet_market
+DROP TABLE IF EXISTS public.market_stake_per_result;
+
+CREATE TABLE IF NOT EXISTS public.market_stake_per_result(
+    marketId VARCHAR(255) NOT NULL,
+    result INTEGER NOT NULL,
+    total DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (marketId, result));
+
+-- keyset pages of the bets of a market, for the settlement and BetProjectionService/BetsByMarket.
+-- Unique as it's the conflict target of the projection upserts, the key of the partitioned layout
+-- (see optional/bet-projection-partitioned.sql)
+CREATE UNIQUE INDEX IF NOT EXISTS bet_wallet_market_market_bet_idx ON public.bet_wallet_market(marketId, betId);
+
+-- progress of the settlement of each closed market, every bet up to lastBetId is settled
+DROP TABLE IF EXISTS public.market_settlement;
+
+CREATE TABLE IF NOT EXISTS public.market_settlement(
+    marketId VARCHAR(255) NOT NULL,
+    result INTEGER NOT NULL,
+    lastBetId VARCHAR(255) NOT NULL DEFAULT '',
+    settled BIGINT NOT NULL,
+    startedAt BIGINT NOT NULL,
+    -- 0 while the settlement is in progress
+    finishedAt BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (marketId));
+
+-- keyset pages of the bets of a wallet for BetProjectionService/BetsByWallet
+CREATE INDEX IF NOT EXISTS bet_wallet_market_wallet_bet_idx ON public.bet_wallet_market(walletId, betId);
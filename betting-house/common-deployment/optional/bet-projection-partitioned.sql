@@ -0,0 +1,43 @@
+-- Not run by init_psql.sh, which only loads the scripts of common-deployment itself.
+-- bet_wallet_market hash partitioned by marketId, instead of the single table of bet-projection.sql.
+-- Same columns, so QBetWalletMarket maps both. The key includes the partition key, betId alone is
+-- indexed for the status updates and the GetState of the bet service, which only know the betId.
+-- An existing table is moved online with example.projection.to.db.BetWalletMarketPartitioning.
+DROP TABLE IF EXISTS public.bet_wallet_market;
+
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market(
+    betId VARCHAR(255) NOT NULL,
+    walletId VARCHAR(255) NOT NULL,
+    marketId VARCHAR(255) NOT NULL,
+    odds DOUBLE PRECISION NOT NULL,
+    stake INTEGER NOT NULL,
+    result INTEGER NOT NULL,
+    status VARCHAR(16) NOT NULL DEFAULT 'open',
+    PRIMARY KEY (marketId, betId))
+    PARTITION BY HASH (marketId);
+
+-- bet-projection.partitioning.partitions of them
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_0 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 0);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_1 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 1);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_2 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 2);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_3 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 3);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_4 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 4);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_5 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 5);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_6 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 6);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_7 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 7);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_8 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 8);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_9 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 9);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_10 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 10);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_11 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 11);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_12 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 12);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_13 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 13);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_14 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 14);
+CREATE TABLE IF NOT EXISTS public.bet_wallet_market_part_15 PARTITION OF public.bet_wallet_market FOR VALUES WITH (MODULUS 16, REMAINDER 15);
+
+-- List partitioning instead, e.g. one partition per competition when the marketIds are known up front:
+--   CREATE TABLE ... PARTITION BY LIST (marketId);
+--   CREATE TABLE public.bet_wallet_market_league PARTITION OF public.bet_wallet_market FOR VALUES IN ('market-1', 'market-2');
+--   CREATE TABLE public.bet_wallet_market_other PARTITION OF public.bet_wallet_market DEFAULT;
+
+CREATE INDEX IF NOT EXISTS bet_wallet_market_bet_idx ON public.bet_wallet_market(betId);
+CREATE INDEX IF NOT EXISTS bet_wallet_market_wallet_bet_idx ON public.bet_wallet_market(walletId, betId);
@@ -0,0 +1,42 @@
+-- Query plans and latencies of the bet_wallet_market queries, to compare the single table of
+-- bet-projection.sql against the partitioned one of bet-projection-partitioned.sql.
+-- Run with psql against a scratch database, once per layout and size:
+--   psql -v rows=10000000 -v markets=100000 -f ../bet-projection.sql -f bet-projection-partitioning-bench.sql
+--   psql -v rows=100000000 -v markets=1000000 -f bet-projection-partitioned.sql -f bet-projection-partitioning-bench.sql
+-- The script fills bet_wallet_market itself with :rows generated bets spread over :markets markets,
+-- a quarter of them open, then explains each query on it. It doesn't touch market_stake_per_result.
+\timing on
+
+INSERT INTO public.bet_wallet_market (betId, walletId, marketId, odds, stake, result, status)
+SELECT 'bet-' || lpad(i::text, 10, '0'),
+       'wallet-' || (i % 1000000),
+       'market-' || (i % :markets),
+       1.5 + (i % 10) / 10.0,
+       1 + i % 100,
+       i % 3,
+       CASE WHEN i % 4 = 0 THEN 'open' ELSE 'closed' END
+FROM generate_series(1, :rows) AS i;
+
+VACUUM ANALYZE public.bet_wallet_market;
+
+-- totals of one market summed from its bets, what MarketStakeBackfill sums for every market at once
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT result, sum(odds * stake) FROM public.bet_wallet_market WHERE marketId = 'market-42' GROUP BY result;
+
+-- upsert of the bet projection
+EXPLAIN (ANALYZE, BUFFERS)
+INSERT INTO public.bet_wallet_market (betId, walletId, marketId, odds, stake, result)
+VALUES ('bet-0000000042', 'wallet-42', 'market-42', 2.0, 10, 1)
+ON CONFLICT (marketId, betId) DO UPDATE SET odds = excluded.odds, stake = excluded.stake;
+
+-- status update of the bet projection, by betId only
+EXPLAIN (ANALYZE, BUFFERS)
+UPDATE public.bet_wallet_market SET status = 'settled' WHERE betId = 'bet-0000000042';
+
+-- keyset page of the settlement and BetsByMarket
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM public.bet_wallet_market WHERE marketId = 'market-42' AND betId > '' ORDER BY betId LIMIT 1000;
+
+-- keyset page of BetsByWallet, across every partition
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM public.bet_wallet_market WHERE walletId = 'wallet-42' AND betId > '' ORDER BY betId LIMIT 1000;
@@ -0,0 +1,7 @@
+-- Not run by init_psql.sh, which only loads the scripts of common-deployment itself.
+-- Widens the odds of a bet_wallet_market created as REAL to DOUBLE PRECISION, the precision of the
+-- odds of the Bet entity, so the bet service answers the same odds from the read model and from the
+-- entity. Going through numeric keeps the odds as they were sent, 1.8 and not the 1.7999999523 of
+-- the REAL value. The table is rewritten under an exclusive lock, stop the bet projection first and
+-- run example.projection.to.db.MarketStakeBackfill afterwards for the totals to use the new values.
+ALTER TABLE public.bet_wallet_market ALTER COLUMN odds TYPE DOUBLE PRECISION USING odds::numeric::double precision;
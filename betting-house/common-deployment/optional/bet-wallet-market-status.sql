@@ -0,0 +1,5 @@
+-- Not run by init_psql.sh, which only loads the scripts of common-deployment itself.
+-- Adds the status column to a bet_wallet_market created before it, without dropping the table as
+-- bet-projection.sql does. The bets already projected start as 'open' whatever their state: the
+-- bet service asks their entities for GetState, until the projection writes their next event.
+ALTER TABLE public.bet_wallet_market ADD COLUMN IF NOT EXISTS status VARCHAR(16) NOT NULL DEFAULT 'open';
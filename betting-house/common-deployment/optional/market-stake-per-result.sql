@@ -0,0 +1,9 @@
+-- Not run by init_psql.sh, which only loads the scripts of common-deployment itself.
+-- Adds market_stake_per_result to a database created before it, without dropping bet_wallet_market
+-- as bet-projection.sql does. Its primary key is the index of GetBetByMarket. Fill it afterwards with
+-- example.projection.to.db.MarketStakeBackfill, from the bets already in bet_wallet_market.
+CREATE TABLE IF NOT EXISTS public.market_stake_per_result(
+    marketId VARCHAR(255) NOT NULL,
+    result INTEGER NOT NULL,
+    total DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (marketId, result));
@@ -0,0 +1,10 @@
+-- Not run by init_psql.sh, which only loads the scripts of common-deployment itself.
+-- Adds the table where the tagged projections record their tag count, see example.projection.TagLayout,
+-- to a database created before it, without dropping the offsets as akka-projection.sql does. Start the
+-- nodes with the tag count the offsets were written with after running it: the count recorded is the
+-- one of the first start.
+CREATE TABLE IF NOT EXISTS public.projection_tags (
+  projection_name VARCHAR(255) NOT NULL,
+  tags INT NOT NULL,
+  PRIMARY KEY(projection_name)
+);
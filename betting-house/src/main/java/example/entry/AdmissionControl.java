@@ -0,0 +1,149 @@
+package example.entry;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
+import akka.grpc.GrpcServiceException;
+import com.typesafe.config.Config;
+import io.grpc.Status;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limits on the sharding asks of the services, one per entity type, found with AIMD.
+ * <p>
+ * An ask over the limit fails at once with a {@link GrpcServiceException} of {@code RESOURCE_EXHAUSTED}, which the
+ * HTTP routes answer with 503, instead of waiting for its timeout behind the others. The limit grows by one for
+ * every limit's worth of asks answered within {@code admission-control.latency-threshold} while at least half of it
+ * is in use, and shrinks by {@code backoff-ratio} when an ask is slower or times out, at most once per threshold so
+ * a wave of timeouts counts once.
+ */
+public class AdmissionControl implements Extension {
+
+    public record Stats(String entityType, int limit, int inFlight, long rejected) {
+    }
+
+    private final boolean enabled;
+    private final Config settings;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    public static final ExtensionId<AdmissionControl> ID = new ExtensionId<>() {
+        @Override
+        public AdmissionControl createExtension(ActorSystem<?> system) {
+            return new AdmissionControl(system);
+        }
+    };
+
+    public static AdmissionControl get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private AdmissionControl(ActorSystem<?> system) {
+        this.settings = system.settings().config().getConfig("admission-control");
+        this.enabled = settings.getBoolean("enabled");
+    }
+
+    /**
+     * Runs the ask if the entity type is under its limit, fails without running it otherwise.
+     */
+    public <T> CompletionStage<T> admit(EntityTypeKey<?> typeKey, Supplier<CompletionStage<T>> ask) {
+        if (!enabled) {
+            return ask.get();
+        }
+        Limiter limiter = limiters.computeIfAbsent(typeKey.name(), name -> new Limiter(settings));
+        if (!limiter.tryAcquire()) {
+            return CompletableFuture.failedFuture(new GrpcServiceException(Status.RESOURCE_EXHAUSTED.withDescription(
+                    "too many requests in flight to [" + typeKey.name() + "], retry later")));
+        }
+        long start = System.nanoTime();
+        CompletionStage<T> result;
+        try {
+            result = ask.get();
+        } catch (RuntimeException e) {
+            limiter.release(System.nanoTime() - start, false);
+            throw e;
+        }
+        return result.whenComplete((response, failure) ->
+                limiter.release(System.nanoTime() - start, unwrap(failure) instanceof TimeoutException));
+    }
+
+    /**
+     * Whether the failure is an ask turned down by {@link #admit}.
+     */
+    public static boolean isRejection(Throwable failure) {
+        return unwrap(failure) instanceof GrpcServiceException grpc
+                && grpc.status().getCode() == Status.Code.RESOURCE_EXHAUSTED;
+    }
+
+    public Iterable<Stats> stats() {
+        return limiters.entrySet().stream()
+                .map(entry -> entry.getValue().stats(entry.getKey()))
+                .toList();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    private static final class Limiter {
+
+        private final int minLimit;
+        private final int maxLimit;
+        private final double backoffRatio;
+        private final long latencyThresholdNanos;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder rejected = new LongAdder();
+        private volatile double limit;
+        private long lastDecreaseNanos = System.nanoTime();
+
+        Limiter(Config settings) {
+            this.minLimit = settings.getInt("min-limit");
+            this.maxLimit = settings.getInt("max-limit");
+            this.backoffRatio = settings.getDouble("backoff-ratio");
+            this.latencyThresholdNanos = settings.getDuration("latency-threshold").toNanos();
+            this.limit = settings.getInt("initial-limit");
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= (int) limit) {
+                    rejected.increment();
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release(long latencyNanos, boolean timedOut) {
+            int stillInFlight = inFlight.decrementAndGet();
+            synchronized (this) {
+                if (timedOut || latencyNanos > latencyThresholdNanos) {
+                    long now = System.nanoTime();
+                    if (now - lastDecreaseNanos > latencyThresholdNanos) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                        lastDecreaseNanos = now;
+                    }
+                } else if (stillInFlight + 1 >= limit / 2) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+        }
+
+        Stats stats(String entityType) {
+            return new Stats(entityType, (int) limit, inFlight.get(), rejected.sum());
+        }
+    }
+}
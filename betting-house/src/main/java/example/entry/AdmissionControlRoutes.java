@@ -0,0 +1,40 @@
+package example.entry;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.server.Route;
+import akka.management.javadsl.ManagementRouteProvider;
+import akka.management.javadsl.ManagementRouteProviderSettings;
+
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static akka.http.javadsl.server.Directives.*;
+
+/**
+ * Akka Management route with the admission control of this node: {@code GET /admission-control}, one line per
+ * entity type with its current limit, asks in flight and asks turned down so far.
+ */
+public class AdmissionControlRoutes implements ManagementRouteProvider {
+
+    private final ActorSystem<?> system;
+
+    public AdmissionControlRoutes(ExtendedActorSystem system) {
+        this.system = Adapter.toTyped(system);
+    }
+
+    @Override
+    public Route routes(ManagementRouteProviderSettings settings) {
+        return path("admission-control", () ->
+                get(() -> complete(render(AdmissionControl.get(system).stats())))
+        );
+    }
+
+    private static String render(Iterable<AdmissionControl.Stats> stats) {
+        return StreamSupport.stream(stats.spliterator(), false)
+                .map(entity -> String.format("entity [%s] limit [%d] in-flight [%d] rejected [%d]%n",
+                        entity.entityType(), entity.limit(), entity.inFlight(), entity.rejected()))
+                .collect(Collectors.joining());
+    }
+}
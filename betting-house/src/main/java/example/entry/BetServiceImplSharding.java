@@ -1,33 +1,97 @@
 package example.entry;
 
+import akka.NotUsed;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
 import akka.cluster.sharding.typed.javadsl.ClusterSharding;
 import akka.cluster.sharding.typed.javadsl.Entity;
 import akka.cluster.sharding.typed.javadsl.EntityRef;
+import akka.stream.javadsl.Source;
 import example.bet.grpc.BetProto;
 import example.bet.grpc.BetService;
 import example.market.domain.Bet;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import example.projection.to.db.BetRepository;
+import example.projection.to.db.BetView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import scala.concurrent.ExecutionContext;
+import scala.concurrent.ExecutionContextExecutor;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 
 public class BetServiceImplSharding implements BetService {
 
+    private final Logger log = LoggerFactory.getLogger(BetServiceImplSharding.class);
+    private final ActorSystem<?> system;
     private final ClusterSharding sharding;
     private ExecutionContext executionContext;
+    private final int openStreamParallelism;
+    private final AdmissionControl admission;
+    private final RpcMetrics.Rpc openRpc;
+    private final RpcMetrics.Rpc cancelRpc;
+    private final RpcMetrics.Rpc settleRpc;
+    private final RpcMetrics.Rpc getStateRpc;
 
-    public BetServiceImplSharding(ClusterSharding sharding, ExecutionContext executionContext) {
+    private final BetRepository repository;
+    private final ExecutionContextExecutor jdbcExecutor;
+    private final boolean stateFromReadModel;
+    // a bet in a terminal state never changes again
+    private final Map<String, BetProto.Bet> terminalBets;
+    // bets found open, asked to their entity without reading the read model until the deadline, in nanos
+    private final Map<String, Long> openBets;
+    private final long openTtlNanos;
+
+    public BetServiceImplSharding(
+            ActorSystem<?> system,
+            ClusterSharding sharding,
+            ExecutionContext executionContext,
+            BetRepository repository) {
+        this.system = system;
         this.sharding = sharding;
         this.executionContext = executionContext;
+        this.openStreamParallelism = system.settings().config().getInt("services.bet.open-stream-parallelism");
+        this.admission = AdmissionControl.get(system);
+        RpcMetrics metrics = RpcMetrics.get(system);
+        this.openRpc = metrics.rpc("BetService", "Open");
+        this.cancelRpc = metrics.rpc("BetService", "Cancel");
+        this.settleRpc = metrics.rpc("BetService", "Settle");
+        this.getStateRpc = metrics.rpc("BetService", "GetState");
+        this.repository = repository;
+        this.jdbcExecutor = system.dispatchers().lookup(DispatcherSelector.fromConfig("akka.projection.jdbc.blocking-jdbc-dispatcher"));
+        this.stateFromReadModel = system.settings().config().getBoolean("services.bet.state-from-read-model.enabled");
+        int maxEntries = system.settings().config().getInt("services.bet.state-from-read-model.max-cached");
+        this.terminalBets = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BetProto.Bet> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.openBets = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.openTtlNanos = system.settings().config()
+                .getDuration("services.bet.state-from-read-model.open-time-to-live").toNanos();
         sharding.init(Entity.of(Bet.typeKey, entityContext ->
-                Bet.create(entityContext.getEntityId())));
+                Bet.create(entityContext.getEntityId(), entityContext.getShard())));
     }
 
     public CompletionStage<BetProto.BetResponse> cancel(BetProto.CancelMessage in) {
         EntityRef<Bet.Command> bet = sharding.entityRefFor(Bet.typeKey, in.getBetId());
 
-        return bet.<Bet.Response>ask(replyTo -> new Bet.Cancel(in.getReason(), replyTo), Duration.ofSeconds(3))
+        return cancelRpc.time(() -> admission.admit(Bet.typeKey, () -> bet.<Bet.Response>ask(replyTo -> new Bet.Cancel(in.getReason(), replyTo), Duration.ofSeconds(3))),
+                        BetServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Bet.Accepted) {
                         return BetProto.BetResponse.newBuilder()
@@ -46,8 +110,9 @@ public class BetServiceImplSharding implements BetService {
     public CompletionStage<BetProto.BetResponse> open(BetProto.Bet in) {
         EntityRef<Bet.Command> bet = sharding.entityRefFor(Bet.typeKey, in.getBetId());
 
-        return bet.<Bet.Response>ask(replyTo -> new Bet.Open(in.getWalletId(), in.getMarketId()
-                        , in.getOdds(), in.getStake(), in.getResult(), replyTo), Duration.ofSeconds(3))
+        return openRpc.time(() -> admission.admit(Bet.typeKey, () -> bet.<Bet.Response>ask(replyTo -> new Bet.Open(in.getWalletId(), in.getMarketId()
+                        , in.getOdds(), in.getStake(), in.getResult(), replyTo), Duration.ofSeconds(3))),
+                        BetServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Bet.Accepted) {
                         return BetProto.BetResponse.newBuilder()
@@ -63,10 +128,32 @@ public class BetServiceImplSharding implements BetService {
                 });
     }
 
+    /**
+     * Opens every bet of the stream with at most {@code services.bet.open-stream-parallelism} asks in flight,
+     * which backpressures the client once they are all taken. Each response carries the betId it answers.
+     */
+    public Source<BetProto.BetResponse, NotUsed> openStream(Source<BetProto.Bet, NotUsed> in) {
+        return in.mapAsyncUnordered(openStreamParallelism, bet ->
+                open(bet).handle((response, failure) -> {
+                    BetProto.BetResponse.Builder builder = BetProto.BetResponse.newBuilder()
+                            .setBetId(bet.getBetId());
+                    if (failure != null) {
+                        return builder.setMessage("Bet NOT opened because [" + failure.getMessage() + "]")
+                                .build();
+                    } else if (response == null) {
+                        return builder.setMessage("Bet NOT opened because [unknown response]")
+                                .build();
+                    }
+                    return builder.setMessage(response.getMessage())
+                            .build();
+                }));
+    }
+
     public CompletionStage<BetProto.BetResponse> settle(BetProto.SettleMessage in) {
         EntityRef<Bet.Command> bet = sharding.entityRefFor(Bet.typeKey, in.getBetId());
 
-        return bet.<Bet.Response>ask(replyTo -> new Bet.Settle(in.getResult(), replyTo), Duration.ofSeconds(3))
+        return settleRpc.time(() -> admission.admit(Bet.typeKey, () -> bet.<Bet.Response>ask(replyTo -> new Bet.Settle(in.getResult(), replyTo), Duration.ofSeconds(3))),
+                        BetServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Bet.Accepted) {
                         return BetProto.BetResponse.newBuilder()
@@ -82,13 +169,85 @@ public class BetServiceImplSharding implements BetService {
                 });
     }
 
+    /**
+     * Bets in a terminal state are passivated, so when {@code services.bet.state-from-read-model} is enabled they are
+     * answered from bet_wallet_market instead of waking them up. Open bets, and bets the projection hasn't caught up
+     * with yet, are still asked. A bet found open is asked right away for {@code open-time-to-live}, its next calls
+     * don't read bet_wallet_market first. A bet its entity answers terminal is cached like the ones read.
+     */
     public CompletionStage<BetProto.Bet> getState(BetProto.BetId in) {
+        return getStateRpc.time(() -> stateOf(in));
+    }
+
+    private CompletionStage<BetProto.Bet> stateOf(BetProto.BetId in) {
+        if (!stateFromReadModel) {
+            return getStateFromEntity(in);
+        }
+        BetProto.Bet cached = terminalBets.get(in.getBetId());
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (recentlyOpen(in.getBetId())) {
+            return getStateFromEntity(in);
+        }
+        return CompletableFuture.supplyAsync(() -> readTerminalBet(in.getBetId()), jdbcExecutor)
+                .thenCompose(terminal -> terminal
+                        .map(CompletableFuture::completedStage)
+                        .orElseGet(() -> getStateFromEntity(in)));
+    }
+
+    private boolean recentlyOpen(String betId) {
+        Long deadline = openBets.get(betId);
+        if (deadline == null) {
+            return false;
+        }
+        if (deadline - System.nanoTime() < 0) {
+            openBets.remove(betId);
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean accepted(Bet.Response response) {
+        return !(response instanceof Bet.RequestUnaccepted);
+    }
+
+    private Optional<BetProto.Bet> readTerminalBet(String betId) {
+        try {
+            QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+            try {
+                Optional<BetProto.Bet> terminal = repository.getBet(betId, session)
+                        .filter(BetView::isTerminal)
+                        .map(this::toProto);
+                terminal.ifPresent(bet -> terminalBets.put(betId, bet));
+                return terminal;
+            } finally {
+                session.close();
+            }
+        } catch (Exception e) {
+            log.warn("can't read bet [{}] from the read model, asking the entity. Reason [{}]", betId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private BetProto.Bet toProto(BetView bet) {
+        return BetProto.Bet.newBuilder()
+                .setBetId(bet.betId())
+                .setWalletId(bet.walletId())
+                .setMarketId(bet.marketId())
+                .setOdds(bet.odds())
+                .setStake(bet.stake())
+                .setResult(bet.result())
+                .build();
+    }
+
+    private CompletionStage<BetProto.Bet> getStateFromEntity(BetProto.BetId in) {
         EntityRef<Bet.Command> bet = sharding.entityRefFor(Bet.typeKey, in.getBetId());
 
-        return bet.ask(Bet.GetState::new, Duration.ofSeconds(3))
+        return admission.admit(Bet.typeKey, () -> bet.ask(Bet.GetState::new, Duration.ofSeconds(3)))
                 .thenApply(response -> {
                     if (response instanceof Bet.CurrentState state) {
-                        return BetProto.Bet.newBuilder()
+                        BetProto.Bet current = BetProto.Bet.newBuilder()
                                 .setBetId(state.state().status().betId())
                                 .setWalletId(state.state().status().walletId())
                                 .setMarketId(state.state().status().marketId())
@@ -96,6 +255,15 @@ public class BetServiceImplSharding implements BetService {
                                 .setStake(state.state().status().stake())
                                 .setResult(state.state().status().result())
                                 .build();
+                        if (stateFromReadModel) {
+                            if (Bet.isTerminal(state.state())) {
+                                openBets.remove(in.getBetId());
+                                terminalBets.put(in.getBetId(), current);
+                            } else {
+                                openBets.put(in.getBetId(), System.nanoTime() + openTtlNanos);
+                            }
+                        }
+                        return current;
                     }
                     return null;
                 });
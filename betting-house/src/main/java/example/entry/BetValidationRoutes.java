@@ -0,0 +1,44 @@
+package example.entry;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.server.Route;
+import akka.management.javadsl.ManagementRouteProvider;
+import akka.management.javadsl.ManagementRouteProviderSettings;
+import example.market.domain.BetValidationMetrics;
+import org.HdrHistogram.Histogram;
+
+import static akka.http.javadsl.server.Directives.*;
+
+/**
+ * Akka Management route with the open-to-validated latency of the bets of this node: {@code GET /bet-validation}.
+ */
+public class BetValidationRoutes implements ManagementRouteProvider {
+
+    private final ActorSystem<?> system;
+
+    public BetValidationRoutes(ExtendedActorSystem system) {
+        this.system = Adapter.toTyped(system);
+    }
+
+    @Override
+    public Route routes(ManagementRouteProviderSettings settings) {
+        return path("bet-validation", () ->
+                get(() -> complete(render(BetValidationMetrics.get(system))))
+        );
+    }
+
+    private static String render(BetValidationMetrics metrics) {
+        Histogram latencies = metrics.latencies();
+        return String.format("validated [%d] timed out [%d]%n" +
+                        "open-to-validated us p50 [%d] p90 [%d] p99 [%d] p99.9 [%d] max [%d]%n",
+                latencies.getTotalCount(),
+                metrics.timedOutCount(),
+                latencies.getValueAtPercentile(50),
+                latencies.getValueAtPercentile(90),
+                latencies.getValueAtPercentile(99),
+                latencies.getValueAtPercentile(99.9),
+                latencies.getMaxValue());
+    }
+}
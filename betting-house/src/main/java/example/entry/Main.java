@@ -6,6 +6,8 @@ import akka.management.javadsl.AkkaManagement;
 import akka.management.cluster.bootstrap.ClusterBootstrap;
 import akka.cluster.sharding.typed.javadsl.ClusterSharding;
 import example.projection.server.BetProjectionServer;
+import example.projection.settlement.MarketSettlement;
+import example.projection.settlement.SettlementRepositoryImpl;
 import example.projection.to.db.BetProjection;
 import example.projection.to.db.BetRepositoryImpl;
 import example.projection.to.kafka.MarketProjection;
@@ -33,14 +35,21 @@ public class Main {
             ClusterBootstrap.get(system).start();
 //            QueryDSLSetup.init(system);
 
-            BetServiceServer.init(system, sharding, ec);
+            BetRepositoryImpl betRepository = new BetRepositoryImpl();
+            BetServiceServer.init(system, sharding, ec, betRepository);
             MarketServiceServer.init(system, sharding, ec);
             WalletServiceServer.init(system, sharding, ec);
 
-            BetRepositoryImpl betRepository = new BetRepositoryImpl();
             BetProjectionServer.init(betRepository, system);
-            BetProjection.init(system, betRepository);
-            MarketProjection.init(system);
+            if (system.settings().config().getBoolean("bet-projection.enabled")) {
+                BetProjection.init(system, betRepository);
+            }
+            if (system.settings().config().getBoolean("market-projection.enabled")) {
+                MarketProjection.init(system);
+            }
+            if (system.settings().config().getBoolean("market-settlement.enabled")) {
+                MarketSettlement.init(system, new SettlementRepositoryImpl());
+            }
         } catch (Throwable ex) {
             if (NonFatal.apply(ex)) {
                 log.error("Terminating Betting App. Reason [{}]", ex.getMessage());
@@ -2,11 +2,15 @@ package example.entry;
 
 import akka.NotUsed;
 import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
 import akka.cluster.sharding.typed.javadsl.ClusterSharding;
 import akka.cluster.sharding.typed.javadsl.Entity;
 import akka.cluster.sharding.typed.javadsl.EntityRef;
+import akka.stream.OverflowStrategy;
 import akka.stream.javadsl.Source;
 import example.market.domain.Market;
+import example.market.domain.MarketOddsFeed;
+import example.market.domain.MarketOddsView;
 import example.market.grpc.MarketProto;
 import example.market.grpc.MarketService;
 import scala.concurrent.ExecutionContext;
@@ -16,6 +20,7 @@ import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 
 public class MarketServiceImplSharding implements MarketService {
@@ -23,10 +28,40 @@ public class MarketServiceImplSharding implements MarketService {
     private final ClusterSharding sharding;
     //    private final ExecutionContext executionContext = ExecutionContext.global();
     private ExecutionContext executionContext;
+    private final MarketOddsView oddsView;
+    private final MarketOddsFeed oddsFeed;
+    private final AdmissionControl admission;
+    private final RpcMetrics.Rpc openRpc;
+    private final RpcMetrics.Rpc updateRpc;
+    private final RpcMetrics.Rpc closeRpc;
+    private final RpcMetrics.Rpc cancelRpc;
+    private final RpcMetrics.Rpc getStateRpc;
+    private final RpcMetrics.Rpc subscribeOddsRpc;
+    private final int updateParallelism;
+    private final int updateLaneBuffer;
+
+    public MarketServiceImplSharding(ActorSystem<?> system, ClusterSharding sharding, ExecutionContext executionContext) {
+        this(system, sharding, executionContext, system.settings().config().getInt("services.market.update-parallelism"));
+    }
 
-    public MarketServiceImplSharding(ClusterSharding sharding, ExecutionContext executionContext) {
+    public MarketServiceImplSharding(ActorSystem<?> system,
+                                     ClusterSharding sharding,
+                                     ExecutionContext executionContext,
+                                     int updateParallelism) {
         this.sharding = sharding;
         this.executionContext = executionContext;
+        this.updateParallelism = updateParallelism;
+        this.updateLaneBuffer = system.settings().config().getInt("services.market.update-lane-buffer");
+        this.oddsView = MarketOddsView.get(system);
+        this.oddsFeed = MarketOddsFeed.get(system);
+        this.admission = AdmissionControl.get(system);
+        RpcMetrics metrics = RpcMetrics.get(system);
+        this.openRpc = metrics.rpc("MarketService", "Open");
+        this.updateRpc = metrics.rpc("MarketService", "Update");
+        this.closeRpc = metrics.rpc("MarketService", "CloseMarket");
+        this.cancelRpc = metrics.rpc("MarketService", "Cancel");
+        this.getStateRpc = metrics.rpc("MarketService", "GetState");
+        this.subscribeOddsRpc = metrics.rpc("MarketService", "SubscribeOdds");
         sharding.init(Entity.of(Market.typeKey, entityContext ->
                 Market.create(entityContext.getEntityId())));
     }
@@ -35,8 +70,8 @@ public class MarketServiceImplSharding implements MarketService {
     public CompletionStage<MarketProto.Response> cancel(MarketProto.CancelMarket in) {
         EntityRef<Market.Command> market = sharding.entityRefFor(Market.typeKey, in.getMarketId());
 
-        return market.<Market.Response>ask(replyTo -> new Market.Cancel(in.getReason(), replyTo)
-                        , Duration.ofSeconds(3))
+        return cancelRpc.time(() -> admission.admit(Market.typeKey, () -> market.<Market.Response>ask(replyTo -> new Market.Cancel(in.getReason(), replyTo)
+                        , Duration.ofSeconds(3))), MarketServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Market.Accepted) {
                         return MarketProto.Response.newBuilder()
@@ -55,8 +90,8 @@ public class MarketServiceImplSharding implements MarketService {
     @Override
     public CompletionStage<MarketProto.Response> closeMarket(MarketProto.MarketId in) {
         EntityRef<Market.Command> market = sharding.entityRefFor(Market.typeKey, in.getMarketId());
-        return market.ask(Market.Close::new
-                        , Duration.ofSeconds(3))
+        return closeRpc.time(() -> admission.admit(Market.typeKey, () -> market.ask(Market.Close::new
+                        , Duration.ofSeconds(3))), MarketServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Market.Accepted) {
                         return MarketProto.Response.newBuilder()
@@ -75,36 +110,53 @@ public class MarketServiceImplSharding implements MarketService {
     @Override
     public CompletionStage<MarketProto.MarketData> getState(MarketProto.MarketId in) {
         EntityRef<Market.Command> market = sharding.entityRefFor(Market.typeKey, in.getMarketId());
-        return market.ask(Market.GetState::new
-                        , Duration.ofSeconds(3))
-                .thenApply(state -> {
-                    Market.CurrentState currentState = (Market.CurrentState) state;
-
-                    String marketId = currentState.status().marketId();
-                    Market.Fixture fixture = currentState.status().fixture();
-                    Market.Odds odds = currentState.status().odds();
-
-                    return MarketProto.MarketData.newBuilder()
-                            .setMarketId(marketId)
-                            .setFixture(fixture != null ? MarketProto.FixtureData.newBuilder()
-                                    .setId(fixture.id())
-                                    .setHomeTeam(fixture.homeTeam())
-                                    .setAwayTeam(fixture.awayTeam())
-                                    : null)
-                            .setOdds(odds != null ? MarketProto.OddsData.newBuilder()
-                                    .setWinHome(odds.winHome())
-                                    .setWinAway(odds.winAway())
-                                    .setTie(odds.draw())
-                                    : null)
-                            .build();
-                });
+        return getStateRpc.time(() -> admission.admit(Market.typeKey, () -> market.ask(Market.GetState::new
+                        , Duration.ofSeconds(3))))
+                .thenApply(state -> marketData(((Market.CurrentState) state).status()));
+    }
+
+    /**
+     * The replicated status first, so a crowd of subscribers to the same market doesn't ask the entity, then the
+     * odds published after each update. Its latency is the time to that first status.
+     */
+    @Override
+    public Source<MarketProto.MarketData, NotUsed> subscribeOdds(MarketProto.MarketId in) {
+        String marketId = in.getMarketId();
+        CompletionStage<Market.Status> current = subscribeOddsRpc.time(() -> oddsView.lookup(marketId)
+                .<CompletionStage<Market.Status>>map(CompletableFuture::completedFuture)
+                .orElseGet(() -> admission.admit(Market.typeKey, () -> sharding.entityRefFor(Market.typeKey, marketId)
+                        .ask(Market.GetState::new, Duration.ofSeconds(3)))
+                        .thenApply(state -> ((Market.CurrentState) state).status())));
+
+        return Source.completionStage(current)
+                .concat(oddsFeed.subscribe(marketId))
+                .map(MarketServiceImplSharding::marketData);
+    }
+
+    private static MarketProto.MarketData marketData(Market.Status status) {
+        Market.Fixture fixture = status.fixture();
+        Market.Odds odds = status.odds();
+
+        return MarketProto.MarketData.newBuilder()
+                .setMarketId(status.marketId())
+                .setFixture(fixture != null ? MarketProto.FixtureData.newBuilder()
+                        .setId(fixture.id())
+                        .setHomeTeam(fixture.homeTeam())
+                        .setAwayTeam(fixture.awayTeam())
+                        : null)
+                .setOdds(odds != null ? MarketProto.OddsData.newBuilder()
+                        .setWinHome(odds.winHome())
+                        .setWinAway(odds.winAway())
+                        .setTie(odds.draw())
+                        : null)
+                .build();
     }
 
     @Override
     public CompletionStage<MarketProto.Response> open(MarketProto.MarketData in) {
         EntityRef<Market.Command> market = sharding.entityRefFor(Market.typeKey, in.getMarketId());
 
-        return market.<Market.Response>ask(replyTo -> {
+        return openRpc.time(() -> admission.admit(Market.typeKey, () -> market.<Market.Response>ask(replyTo -> {
                     Market.Fixture fixture;
                     if (in.getFixture() != null) {
                         fixture = new Market.Fixture(in.getFixture().getId()
@@ -123,7 +175,7 @@ public class MarketServiceImplSharding implements MarketService {
 
                     OffsetDateTime opensAt = OffsetDateTime.ofInstant(Instant.ofEpochMilli(in.getOpensAt()), ZoneId.of("UTC"));
                     return new Market.Open(fixture, odds, opensAt, replyTo);
-                }, Duration.ofSeconds(3))
+                }, Duration.ofSeconds(3))), MarketServiceImplSharding::accepted)
                 .thenApply(response -> {
                     if (response instanceof Market.Accepted) {
                         return MarketProto.Response.newBuilder().setMessage("initialized")
@@ -137,27 +189,53 @@ public class MarketServiceImplSharding implements MarketService {
                 });
     }
 
+    /**
+     * The markets are hashed over {@code services.market.update-parallelism} lanes, each applying its updates one at
+     * a time. The updates of a market keep their order, and a slow market only holds back the markets of its lane.
+     */
     public Source<MarketProto.Response, NotUsed> update(
             Source<MarketProto.MarketData, NotUsed> in) {
 
-        return in.mapAsync(10, marketData -> {
-            EntityRef<Market.Command> marketRef =
-                    sharding.entityRefFor(Market.typeKey, marketData.getMarketId());
-
-            return marketRef.<Market.Response>ask(replyTo -> auxUpdate(marketData, replyTo)
-                            , Duration.ofSeconds(3))
-                    .thenApply(response -> {
-                        if (response instanceof Market.Accepted) {
-                            return MarketProto.Response.newBuilder().setMessage("Updated")
-                                    .build();
-                        } else if (response instanceof Market.RequestUnaccepted) {
-                            String reason = ((Market.RequestUnaccepted) response).reason();
-                            return MarketProto.Response.newBuilder().setMessage("market NOT updated because [" + reason + "]")
-                                    .build();
-                        }
-                        return null; // Handle other cases if necessary
-                    });
-        });
+        return in.groupBy(updateParallelism, marketData -> Math.floorMod(marketData.getMarketId().hashCode(), updateParallelism))
+                .buffer(updateLaneBuffer, OverflowStrategy.backpressure())
+                .mapAsync(1, this::updateMarket)
+                .mergeSubstreams();
+    }
+
+    private CompletionStage<MarketProto.Response> updateMarket(MarketProto.MarketData marketData) {
+        String marketId = marketData.getMarketId();
+        EntityRef<Market.Command> marketRef = sharding.entityRefFor(Market.typeKey, marketId);
+
+        return updateRpc.time(() -> admission.admit(Market.typeKey, () -> marketRef.<Market.Response>ask(replyTo -> auxUpdate(marketData, replyTo)
+                        , Duration.ofSeconds(3))), MarketServiceImplSharding::accepted)
+                .handle((response, failure) -> {
+                    if (AdmissionControl.isRejection(failure)) {
+                        return updateResponse(marketId, MarketProto.Response.Outcome.OVERLOADED,
+                                "market NOT updated because [too many updates in flight, retry later]");
+                    } else if (failure != null) {
+                        return updateResponse(marketId, MarketProto.Response.Outcome.FAILED,
+                                "market NOT updated because [" + failure.getMessage() + "]");
+                    } else if (response instanceof Market.Accepted) {
+                        return updateResponse(marketId, MarketProto.Response.Outcome.ACCEPTED, "Updated");
+                    } else if (response instanceof Market.RequestUnaccepted(String reason)) {
+                        return updateResponse(marketId, MarketProto.Response.Outcome.REJECTED,
+                                "market NOT updated because [" + reason + "]");
+                    }
+                    return updateResponse(marketId, MarketProto.Response.Outcome.FAILED,
+                            "market NOT updated because of unexpected response [" + response + "]");
+                });
+    }
+
+    private static boolean accepted(Market.Response response) {
+        return !(response instanceof Market.RequestUnaccepted);
+    }
+
+    private static MarketProto.Response updateResponse(String marketId, MarketProto.Response.Outcome outcome, String message) {
+        return MarketProto.Response.newBuilder()
+                .setMarketId(marketId)
+                .setOutcome(outcome)
+                .setMessage(message)
+                .build();
     }
 
     private Market.Update auxUpdate(MarketProto.MarketData marketData, ActorRef<Market.Response> replyTo) {
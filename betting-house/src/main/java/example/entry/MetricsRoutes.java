@@ -0,0 +1,171 @@
+package example.entry;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.server.Route;
+import akka.management.javadsl.ManagementRouteProvider;
+import akka.management.javadsl.ManagementRouteProviderSettings;
+import example.market.domain.BetValidationMetrics;
+import example.market.domain.MarketOddsFeed;
+import example.market.domain.MarketOddsView;
+import example.projection.dbconnection.ReadSideDataSource;
+import example.projection.settlement.SettlementMetrics;
+import example.projection.to.db.MarketStakeCache;
+import org.HdrHistogram.Histogram;
+
+import java.util.Locale;
+
+import static akka.http.javadsl.server.Directives.*;
+
+/**
+ * Akka Management route with the metrics of the services of this node in the Prometheus text format:
+ * {@code GET /metrics}. The latencies of {@link RpcMetrics} are a summary per RPC and outcome, its {@code _sum} is
+ * the mean of the histogram times its count. The limits of {@link AdmissionControl} are gauges per entity type.
+ * The read-side connection pool of {@link ReadSideDataSource} has its connections per state and the time taken to
+ * borrow one. The counters of {@link MarketStakeCache} and {@link MarketOddsView} are per outcome of a lookup.
+ * {@link MarketOddsFeed} has its subscribers on this node and the statuses they got or skipped. The validation
+ * latency of {@link BetValidationMetrics} is a summary like the RPCs, the settlements of {@link SettlementMetrics}
+ * are counters and the bets settled so far of the markets being settled.
+ */
+public class MetricsRoutes implements ManagementRouteProvider {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final ActorSystem<?> system;
+
+    public MetricsRoutes(ExtendedActorSystem system) {
+        this.system = Adapter.toTyped(system);
+    }
+
+    @Override
+    public Route routes(ManagementRouteProviderSettings settings) {
+        return path("metrics", () ->
+                get(() -> complete(HttpEntities.create(ContentTypes.TEXT_PLAIN_UTF8, render())))
+        );
+    }
+
+    private String render() {
+        StringBuilder out = new StringBuilder();
+
+        header(out, "betting_house_rpc_duration_seconds", "summary",
+                "Latency of the service calls per RPC and outcome.");
+        for (RpcMetrics.Latencies latencies : RpcMetrics.get(system).latencies()) {
+            summary(out, "betting_house_rpc_duration_seconds",
+                    String.format("service=\"%s\",method=\"%s\",outcome=\"%s\"",
+                            latencies.service(), latencies.method(), latencies.outcome().label()),
+                    latencies.histogram());
+        }
+
+        Iterable<AdmissionControl.Stats> admission = AdmissionControl.get(system).stats();
+        header(out, "betting_house_admission_limit", "gauge", "Concurrency limit of the asks per entity type.");
+        admission.forEach(stats -> out.append(String.format("betting_house_admission_limit{entity_type=\"%s\"} %d%n",
+                stats.entityType(), stats.limit())));
+        header(out, "betting_house_admission_in_flight", "gauge", "Asks in flight per entity type.");
+        admission.forEach(stats -> out.append(String.format("betting_house_admission_in_flight{entity_type=\"%s\"} %d%n",
+                stats.entityType(), stats.inFlight())));
+        header(out, "betting_house_admission_rejected_total", "counter", "Asks turned down per entity type.");
+        admission.forEach(stats -> out.append(String.format("betting_house_admission_rejected_total{entity_type=\"%s\"} %d%n",
+                stats.entityType(), stats.rejected())));
+
+        ReadSideDataSource.PoolMetrics pool = ReadSideDataSource.get(system).metrics();
+        header(out, "betting_house_read_side_pool_connections", "gauge",
+                "Connections of the read-side pool per state.");
+        out.append(String.format("betting_house_read_side_pool_connections{state=\"active\"} %d%n", pool.active()));
+        out.append(String.format("betting_house_read_side_pool_connections{state=\"idle\"} %d%n", pool.idle()));
+        out.append(String.format("betting_house_read_side_pool_connections{state=\"total\"} %d%n", pool.total()));
+        header(out, "betting_house_read_side_pool_pending_threads", "gauge",
+                "Threads waiting for a connection of the read-side pool.");
+        out.append(String.format("betting_house_read_side_pool_pending_threads %d%n", pool.waiting()));
+        header(out, "betting_house_read_side_pool_acquire_seconds", "summary",
+                "Time taken by the read-side pool to hand over a connection.");
+        out.append(String.format(Locale.ROOT, "betting_house_read_side_pool_acquire_seconds_sum %s%n",
+                seconds((double) pool.meanAcquireMicros() * pool.acquired())));
+        out.append(String.format("betting_house_read_side_pool_acquire_seconds_count %d%n", pool.acquired()));
+        header(out, "betting_house_read_side_pool_acquire_max_seconds", "gauge",
+                "Longest time taken by the read-side pool to hand over a connection.");
+        out.append(String.format(Locale.ROOT, "betting_house_read_side_pool_acquire_max_seconds %s%n",
+                seconds(pool.maxAcquireMicros())));
+
+        MarketStakeCache.CacheStats cache = MarketStakeCache.get(system).stats();
+        header(out, "betting_house_stake_cache_lookups_total", "counter",
+                "Lookups of the stakes per market cache per outcome.");
+        out.append(String.format("betting_house_stake_cache_lookups_total{outcome=\"hit\"} %d%n", cache.hits()));
+        out.append(String.format("betting_house_stake_cache_lookups_total{outcome=\"miss\"} %d%n", cache.misses()));
+        header(out, "betting_house_stake_cache_removals_total", "counter",
+                "Entries removed from the stakes per market cache per cause.");
+        out.append(String.format("betting_house_stake_cache_removals_total{cause=\"eviction\"} %d%n",
+                cache.evictions()));
+        out.append(String.format("betting_house_stake_cache_removals_total{cause=\"invalidation\"} %d%n",
+                cache.invalidations()));
+        header(out, "betting_house_stake_cache_entries", "gauge", "Entries of the stakes per market cache.");
+        out.append(String.format("betting_house_stake_cache_entries %d%n", cache.size()));
+
+        MarketOddsView.Stats oddsView = MarketOddsView.get(system).stats();
+        header(out, "betting_house_odds_view_lookups_total", "counter",
+                "Lookups of the replicated market odds per outcome, a miss or a stale entry asks the market.");
+        out.append(String.format("betting_house_odds_view_lookups_total{outcome=\"hit\"} %d%n", oddsView.hits()));
+        out.append(String.format("betting_house_odds_view_lookups_total{outcome=\"miss\"} %d%n", oddsView.misses()));
+        out.append(String.format("betting_house_odds_view_lookups_total{outcome=\"stale\"} %d%n", oddsView.stale()));
+
+        MarketOddsFeed.Stats oddsFeed = MarketOddsFeed.get(system).stats();
+        header(out, "betting_house_odds_feed_subscribers", "gauge",
+                "Subscribers to the odds of a market on this node.");
+        out.append(String.format("betting_house_odds_feed_subscribers %d%n", oddsFeed.subscribers()));
+        header(out, "betting_house_odds_feed_published_total", "counter", "Market statuses published from this node.");
+        out.append(String.format("betting_house_odds_feed_published_total %d%n", oddsFeed.published()));
+        header(out, "betting_house_odds_feed_dropped_total", "counter",
+                "Market statuses skipped by the slow subscribers of this node.");
+        out.append(String.format("betting_house_odds_feed_dropped_total %d%n", oddsFeed.dropped()));
+
+        BetValidationMetrics validation = BetValidationMetrics.get(system);
+        header(out, "betting_house_bet_validation_duration_seconds", "summary",
+                "Latency from the opening of a bet to its validation.");
+        summary(out, "betting_house_bet_validation_duration_seconds", "", validation.latencies());
+        header(out, "betting_house_bet_validation_timed_out_total", "counter", "Bets whose validation timed out.");
+        out.append(String.format("betting_house_bet_validation_timed_out_total %d%n", validation.timedOutCount()));
+
+        SettlementMetrics.Snapshot settlements = SettlementMetrics.get(system).snapshot();
+        header(out, "betting_house_settlement_bets_total", "counter", "Bets settled on this node.");
+        out.append(String.format("betting_house_settlement_bets_total %d%n", settlements.settledBets()));
+        header(out, "betting_house_settlement_late_bets_total", "counter",
+                "Bets settled by a sweep, projected after their page was settled.");
+        out.append(String.format("betting_house_settlement_late_bets_total %d%n", settlements.lateBets()));
+        header(out, "betting_house_settlement_failed_pages_total", "counter", "Pages of bets whose settlement failed.");
+        out.append(String.format("betting_house_settlement_failed_pages_total %d%n", settlements.failedPages()));
+        header(out, "betting_house_settlement_running_markets", "gauge", "Markets being settled on this node.");
+        out.append(String.format("betting_house_settlement_running_markets %d%n", settlements.running().size()));
+        header(out, "betting_house_settlement_market_settled_bets", "gauge",
+                "Bets settled so far of each market being settled on this node.");
+        settlements.running().forEach(market -> out.append(String.format(
+                "betting_house_settlement_market_settled_bets{market_id=\"%s\"} %d%n",
+                market.marketId(), market.settled())));
+
+        return out.toString();
+    }
+
+    /**
+     * The quantiles, {@code _sum} and {@code _count} of a summary in seconds, from a histogram in microseconds.
+     */
+    private static void summary(StringBuilder out, String name, String labels, Histogram histogram) {
+        String separator = labels.isEmpty() ? "" : ",";
+        for (double quantile : QUANTILES) {
+            out.append(String.format(Locale.ROOT, "%s{%s%squantile=\"%s\"} %s%n",
+                    name, labels, separator, quantile, seconds(histogram.getValueAtPercentile(quantile * 100))));
+        }
+        out.append(String.format(Locale.ROOT, "%s_sum{%s} %s%n",
+                name, labels, seconds(histogram.getMean() * histogram.getTotalCount())));
+        out.append(String.format(Locale.ROOT, "%s_count{%s} %d%n", name, labels, histogram.getTotalCount()));
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(double micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000);
+    }
+}
@@ -0,0 +1,174 @@
+package example.entry;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.stream.javadsl.Source;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Latency of the calls of the gRPC and HTTP services of this node per RPC and {@link Outcome}, in microseconds.
+ * <p>
+ * A service looks up its {@link Rpc}s once, when it's created. Timing a call then costs two {@link System#nanoTime}
+ * and one {@link Recorder#recordValue}, which doesn't lock. The recorded values are moved to the cumulative
+ * histograms only when they are read, see {@link MetricsRoutes}.
+ */
+public class RpcMetrics implements Extension {
+
+    public enum Outcome {
+        ACCEPTED,
+        // the entity answered RequestUnaccepted, or Rejected for a wallet
+        UNACCEPTED,
+        // no answer within the ask timeout
+        TIMEOUT,
+        // turned down by AdmissionControl
+        OVERLOADED,
+        FAILED;
+
+        private final String label = name().toLowerCase();
+
+        public String label() {
+            return label;
+        }
+
+        static Outcome of(Throwable failure) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                    ? failure.getCause()
+                    : failure;
+            if (cause instanceof TimeoutException) {
+                return TIMEOUT;
+            } else if (AdmissionControl.isRejection(cause)) {
+                return OVERLOADED;
+            }
+            return FAILED;
+        }
+    }
+
+    public record Latencies(String service, String method, Outcome outcome, Histogram histogram) {
+    }
+
+    private final boolean enabled;
+    private final Map<String, Rpc> rpcs = new ConcurrentHashMap<>();
+
+    public static final ExtensionId<RpcMetrics> ID = new ExtensionId<>() {
+        @Override
+        public RpcMetrics createExtension(ActorSystem<?> system) {
+            return new RpcMetrics(system);
+        }
+    };
+
+    public static RpcMetrics get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private RpcMetrics(ActorSystem<?> system) {
+        this.enabled = system.settings().config().getBoolean("rpc-metrics.enabled");
+    }
+
+    public Rpc rpc(String service, String method) {
+        return rpcs.computeIfAbsent(service + "/" + method, name -> new Rpc(service, method));
+    }
+
+    /**
+     * All the latencies recorded since the node started, of the outcomes seen at least once.
+     */
+    public Collection<Latencies> latencies() {
+        return rpcs.values().stream()
+                .flatMap(rpc -> rpc.latencies().stream())
+                .toList();
+    }
+
+    public final class Rpc {
+
+        private final String service;
+        private final String method;
+        private final Recorder[] recorders = new Recorder[Outcome.values().length];
+        private final Histogram[] totals = new Histogram[Outcome.values().length];
+
+        private Rpc(String service, String method) {
+            this.service = service;
+            this.method = method;
+            for (int i = 0; i < recorders.length; i++) {
+                recorders[i] = new Recorder(3);
+                totals[i] = new Histogram(3);
+            }
+        }
+
+        /**
+         * Times a call whose response is always {@link Outcome#ACCEPTED}.
+         */
+        public <T> CompletionStage<T> time(Supplier<CompletionStage<T>> call) {
+            return time(call, response -> true);
+        }
+
+        /**
+         * Times a call, a response not {@code accepted} counts as {@link Outcome#UNACCEPTED} and a failure by its
+         * cause.
+         */
+        public <T> CompletionStage<T> time(Supplier<CompletionStage<T>> call, Predicate<? super T> accepted) {
+            if (!enabled) {
+                return call.get();
+            }
+            long start = System.nanoTime();
+            CompletionStage<T> result;
+            try {
+                result = call.get();
+            } catch (RuntimeException e) {
+                record(Outcome.of(e), start);
+                throw e;
+            }
+            return result.whenComplete((response, failure) -> {
+                if (failure != null) {
+                    record(Outcome.of(failure), start);
+                } else {
+                    record(accepted.test(response) ? Outcome.ACCEPTED : Outcome.UNACCEPTED, start);
+                }
+            });
+        }
+
+        /**
+         * Times a stream from its materialization until it completes, or fails.
+         */
+        public <T, M> Source<T, M> time(Source<T, M> stream) {
+            if (!enabled) {
+                return stream;
+            }
+            return stream.watchTermination((materialized, done) -> {
+                long start = System.nanoTime();
+                done.whenComplete((ignored, failure) ->
+                        record(failure == null ? Outcome.ACCEPTED : Outcome.of(failure), start));
+                return materialized;
+            });
+        }
+
+        private void record(Outcome outcome, long startNanos) {
+            recorders[outcome.ordinal()].recordValue(Math.max(0, (System.nanoTime() - startNanos) / 1_000));
+        }
+
+        private Collection<Latencies> latencies() {
+            List<Latencies> latencies = new ArrayList<>();
+            synchronized (totals) {
+                for (Outcome outcome : Outcome.values()) {
+                    Histogram total = totals[outcome.ordinal()];
+                    total.add(recorders[outcome.ordinal()].getIntervalHistogram());
+                    if (total.getTotalCount() > 0) {
+                        latencies.add(new Latencies(service, method, outcome, total.copy()));
+                    }
+                }
+            }
+            return latencies;
+        }
+    }
+}
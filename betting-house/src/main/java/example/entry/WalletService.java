@@ -1,34 +1,82 @@
 package example.entry;
 
 
+import akka.actor.typed.ActorSystem;
 import akka.cluster.sharding.typed.javadsl.ClusterSharding;
 import akka.cluster.sharding.typed.javadsl.Entity;
 import akka.cluster.sharding.typed.javadsl.EntityRef;
 import akka.http.javadsl.marshallers.jackson.Jackson;
 import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.ExceptionHandler;
 import akka.http.javadsl.server.Route;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
 import example.market.domain.Wallet;
-import scala.concurrent.ExecutionContext;
 
 import java.time.Duration;
-import java.util.concurrent.ExecutionException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
 
 import static akka.http.javadsl.server.Directives.*;
 
 public class WalletService {
 
     private final ClusterSharding sharding;
-    private final ExecutionContext executionContext;
+    private final ActorSystem<?> system;
+    private final int bulkParallelism;
+    private final int bulkMaxOperations;
+    private final AdmissionControl admission;
+    private final RpcMetrics.Rpc addRpc;
+    private final RpcMetrics.Rpc removeRpc;
+    private final RpcMetrics.Rpc bulkRpc;
+    private final RpcMetrics.Rpc checkFundsRpc;
 
-    public WalletService(ClusterSharding sharding) {
+    /**
+     * @param operation "add" or "remove"
+     * @param funds     more than 0
+     */
+    public record BulkOperation(String walletId, String operation, int funds) {
+    }
+
+    public record BulkRequest(List<BulkOperation> operations) {
+    }
+
+    /**
+     * @param status "accepted", "rejected", "overloaded" (turned down by admission control, can be retried) or "failed"
+     */
+    public record BulkResult(String walletId, String operation, int funds, String status) {
+    }
+
+    public record BulkResponse(List<BulkResult> results) {
+    }
+
+    /**
+     * Asks turned down by {@link AdmissionControl} are answered with 503, for the client to retry later.
+     */
+    private final ExceptionHandler overloaded = ExceptionHandler.newBuilder()
+            .match(RuntimeException.class,
+                    AdmissionControl::isRejection,
+                    e -> complete(StatusCodes.SERVICE_UNAVAILABLE, "too many requests in flight, retry later"))
+            .build();
+
+    public WalletService(ClusterSharding sharding, ActorSystem<?> system) {
         this.sharding = sharding;
-        this.executionContext = ExecutionContext.global();
+        this.system = system;
+        this.bulkParallelism = system.settings().config().getInt("services.wallet.bulk-parallelism");
+        this.bulkMaxOperations = system.settings().config().getInt("services.wallet.bulk-max-operations");
+        this.admission = AdmissionControl.get(system);
+        RpcMetrics metrics = RpcMetrics.get(system);
+        this.addRpc = metrics.rpc("WalletService", "Add");
+        this.removeRpc = metrics.rpc("WalletService", "Remove");
+        this.bulkRpc = metrics.rpc("WalletService", "Bulk");
+        this.checkFundsRpc = metrics.rpc("WalletService", "CheckFunds");
 
         sharding.init(Entity.of(Wallet.typeKey, entityContext -> Wallet.create(entityContext.getEntityId())));
     }
 
     public Route route() {
-        return pathPrefix("wallet", () ->
+        return handleExceptions(overloaded, () -> pathPrefix("wallet", () ->
                 concat(
                         path("add", () ->
                                 post(() ->
@@ -39,21 +87,15 @@ public class WalletService {
                                                     EntityRef<Wallet.Command> wallet =
                                                             sharding.entityRefFor(Wallet.typeKey, walletId);
 
-                                                    try {
-                                                        return wallet.<Wallet.UpdatedResponse>ask(replyTo ->
-                                                                        new Wallet.AddFunds(funds, replyTo), Duration.ofSeconds(5))
-                                                                .thenApply(updatedResponse -> {
-                                                                    if (updatedResponse instanceof Wallet.Accepted) {
-                                                                        return complete(StatusCodes.ACCEPTED);
-                                                                    } else {
-                                                                        return complete(StatusCodes.NOT_ACCEPTABLE);
-                                                                    }
-                                                                })
-                                                                .toCompletableFuture()
-                                                                .get();
-                                                    } catch (InterruptedException | ExecutionException e) {
-                                                        throw new RuntimeException(e);
-                                                    }
+                                                    return onSuccess(addRpc.time(() -> admission.admit(Wallet.typeKey, () -> wallet.<Wallet.UpdatedResponse>ask(replyTo ->
+                                                                    new Wallet.AddFunds(funds, replyTo), Duration.ofSeconds(5))), WalletService::accepted),
+                                                            updatedResponse -> {
+                                                                if (updatedResponse instanceof Wallet.Accepted) {
+                                                                    return complete(StatusCodes.ACCEPTED);
+                                                                } else {
+                                                                    return complete(StatusCodes.NOT_ACCEPTABLE);
+                                                                }
+                                                            });
                                                 })
                                         )
                                 )
@@ -66,49 +108,113 @@ public class WalletService {
                                                             sharding.entityRefFor(Wallet.typeKey, walletId);
 
                                                     int funds = Integer.parseInt(fundsStr);
-                                                    try {
-                                                        return wallet.<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.ReserveFunds(funds, replyTo)
-                                                                        , Duration.ofSeconds(5))
-                                                                .thenApply(response -> {
-                                                                    if (response instanceof Wallet.Accepted) {
-                                                                        return complete(StatusCodes.ACCEPTED);
-                                                                    } else if (response instanceof Wallet.Rejected) {
-                                                                        return complete(StatusCodes.BAD_REQUEST, "not enough funds in the wallet");
-                                                                    } else {
-                                                                        return null; // Replace with appropriate response for other cases
-                                                                    }
-                                                                })
-                                                                .toCompletableFuture()
-                                                                .get();
-                                                    } catch (InterruptedException | ExecutionException e) {
-                                                        throw new RuntimeException(e);
-                                                    }
+                                                    return onSuccess(removeRpc.time(() -> admission.admit(Wallet.typeKey, () -> wallet.<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.ReserveFunds(funds, replyTo)
+                                                                    , Duration.ofSeconds(5))), WalletService::accepted),
+                                                            response -> {
+                                                                if (response instanceof Wallet.Accepted) {
+                                                                    return complete(StatusCodes.ACCEPTED);
+                                                                } else {
+                                                                    return complete(StatusCodes.BAD_REQUEST, "not enough funds in the wallet");
+                                                                }
+                                                            });
                                                 })
                                         )
                                 )
                         ),
+                        path("bulk", () ->
+                                post(() ->
+                                        entity(Jackson.unmarshaller(BulkRequest.class), request ->
+                                                invalid(request)
+                                                        .map(reason -> complete(StatusCodes.BAD_REQUEST, reason))
+                                                        .orElseGet(() -> onSuccess(bulkRpc.time(() -> bulk(request.operations())), results ->
+                                                                complete(StatusCodes.OK, new BulkResponse(results), Jackson.marshaller())))
+                                        )
+                                )
+                        ),
                         get(() ->
                                 parameter("walletId", walletId -> {
                                     EntityRef<Wallet.Command> wallet =
                                             sharding.entityRefFor(Wallet.typeKey, walletId);
 
-                                    try {
-                                        return wallet.<Wallet.Response>ask(Wallet.CheckFunds::new, Duration.ofSeconds(5))
-                                                .thenApply(response -> {
-                                                    if (response instanceof Wallet.CurrentBalance currentBalance) {
-                                                        return complete(StatusCodes.OK, currentBalance, Jackson.marshaller());
-                                                    } else {
-                                                        return complete(StatusCodes.NOT_ACCEPTABLE);
-                                                    }
-                                                })
-                                                .toCompletableFuture()
-                                                .get();
-                                    } catch (InterruptedException | ExecutionException e) {
-                                        throw new RuntimeException(e);
-                                    }
+                                    return onSuccess(checkFundsRpc.time(() -> admission.admit(Wallet.typeKey, () -> wallet.<Wallet.Response>ask(Wallet.CheckFunds::new, Duration.ofSeconds(5)))),
+                                            response -> {
+                                                if (response instanceof Wallet.CurrentBalance currentBalance) {
+                                                    return complete(StatusCodes.OK, currentBalance, Jackson.marshaller());
+                                                } else {
+                                                    return complete(StatusCodes.NOT_ACCEPTABLE);
+                                                }
+                                            });
                                 })
                         )
                 )
-        );
+        ));
+    }
+
+    /**
+     * Why the request is refused as a whole, before any of its operations is sent: too many operations, or one that
+     * can't be applied.
+     */
+    private Optional<String> invalid(BulkRequest request) {
+        List<BulkOperation> operations = request.operations();
+        if (operations == null || operations.isEmpty()) {
+            return Optional.of("no operations");
+        }
+        if (operations.size() > bulkMaxOperations) {
+            return Optional.of("[" + operations.size() + "] operations, at most [" + bulkMaxOperations + "] per request");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation op = operations.get(i);
+            if (op == null || op.walletId() == null || op.walletId().isBlank()) {
+                return Optional.of("operation [" + i + "] has no walletId");
+            }
+            if (!"add".equals(op.operation()) && !"remove".equals(op.operation())) {
+                return Optional.of("operation [" + i + "] is [" + op.operation() + "], not add or remove");
+            }
+            if (op.funds() <= 0) {
+                return Optional.of("operation [" + i + "] has funds [" + op.funds() + "], not more than 0");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sends the operations to their wallets, at most {@code services.wallet.bulk-parallelism} at a time.
+     * The results come back in the order of the operations, each operation is also timed as an Add or a Remove.
+     */
+    private CompletionStage<List<BulkResult>> bulk(List<BulkOperation> operations) {
+        return Source.from(operations)
+                .mapAsync(bulkParallelism, this::applyOperation)
+                .runWith(Sink.seq(), system);
+    }
+
+    private CompletionStage<BulkResult> applyOperation(BulkOperation op) {
+        EntityRef<Wallet.Command> wallet = sharding.entityRefFor(Wallet.typeKey, op.walletId());
+
+        CompletionStage<Wallet.UpdatedResponse> response;
+        if ("add".equals(op.operation())) {
+            response = addRpc.time(() -> admission.admit(Wallet.typeKey, () -> wallet.<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.AddFunds(op.funds(), replyTo), Duration.ofSeconds(5))),
+                    WalletService::accepted);
+        } else {
+            response = removeRpc.time(() -> admission.admit(Wallet.typeKey, () -> wallet.<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.ReserveFunds(op.funds(), replyTo), Duration.ofSeconds(5))),
+                    WalletService::accepted);
+        }
+
+        return response.handle((updatedResponse, failure) -> {
+            String status;
+            if (AdmissionControl.isRejection(failure)) {
+                status = "overloaded";
+            } else if (failure != null) {
+                status = "failed";
+            } else if (updatedResponse instanceof Wallet.Accepted) {
+                status = "accepted";
+            } else {
+                status = "rejected";
+            }
+            return new BulkResult(op.walletId(), op.operation(), op.funds(), status);
+        });
+    }
+
+    private static boolean accepted(Wallet.UpdatedResponse response) {
+        return response instanceof Wallet.Accepted;
     }
-}
\ No newline at end of file
+}
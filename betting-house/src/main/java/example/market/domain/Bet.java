@@ -1,6 +1,7 @@
 package example.market.domain;
 
 import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.SupervisorStrategy;
 import akka.actor.typed.javadsl.ActorContext;
@@ -8,15 +9,23 @@ import akka.actor.typed.javadsl.Behaviors;
 import akka.cluster.sharding.typed.javadsl.ClusterSharding;
 import akka.cluster.sharding.typed.javadsl.EntityRef;
 import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
+import akka.persistence.typed.EventAdapter;
 import akka.persistence.typed.PersistenceId;
+import akka.persistence.typed.RecoveryCompleted;
+import akka.persistence.typed.SnapshotCompleted;
+import akka.persistence.typed.SnapshotFailed;
 import akka.persistence.typed.javadsl.CommandHandler;
+import akka.persistence.typed.javadsl.Effect;
 import akka.persistence.typed.javadsl.EventHandler;
 import akka.persistence.typed.javadsl.EventSourcedBehavior;
 import akka.persistence.typed.javadsl.RetentionCriteria;
+import akka.persistence.typed.javadsl.SignalHandler;
+import com.typesafe.config.Config;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Bet {
 
@@ -53,6 +62,12 @@ public class Bet {
     private record ValidationsTimedOut(int seconds) implements Command {
     }
 
+    private record MarketStatusUnavailable(int attempt, String reason) implements Command {
+    }
+
+    private record RetryMarketStatus(int attempt) implements Command {
+    }
+
     private record Fail(String reason) implements Command {
     }
 
@@ -97,6 +112,12 @@ public class Bet {
         }
     }
 
+    /**
+     * A winning bet waiting for its wallet to confirm the reimbursement.
+     */
+    public record SettlingState(Status status) implements State {
+    }
+
     public record SettledState(Status status) implements State {
     }
 
@@ -109,14 +130,24 @@ public class Bet {
     public record ClosedState(Status status) implements State {
     }
 
-    public static Behavior<Command> create(String betId) {
+    /**
+     * A bet that reaches a terminal state takes a snapshot and passivates itself through its {@code shard}, it won't
+     * take new commands that change it. It passivates again as soon as it's recovered in one, woken up by a command.
+     */
+    public static Behavior<Command> create(String betId, ActorRef<ClusterSharding.ShardCommand> shard) {
         return Behaviors.withTimers(timers ->
                 Behaviors.setup(context -> {
                     ClusterSharding sharding = ClusterSharding.get(context.getSystem());
+                    List<String> tags = tags(context.getSystem());
+                    ValidationSettings validation = ValidationSettings.fromConfig(context.getSystem().settings().config());
+                    BetValidationMetrics metrics = BetValidationMetrics.get(context.getSystem());
                     return new EventSourcedBehavior<Command, Event, State>(PersistenceId.of(typeKey.name(), betId)
                             , SupervisorStrategy.restartWithBackoff(
                             Duration.ofSeconds(10), Duration.ofSeconds(60), 0.1)) {
 
+                        // 0 when the bet was opened before a restart, its validation latency isn't known
+                        private long openedAtNanos = 0;
+
                         @Override
                         public State emptyState() {
                             return new UninitializedState(Status.empty(betId));
@@ -128,10 +159,8 @@ public class Bet {
                                 if (state instanceof UninitializedState(
                                         Status status
                                 ) && command instanceof Open open) {
-                                    timers.startSingleTimer(
-                                            "lifespan",
-                                            new ValidationsTimedOut(10), // this would read from configuration
-                                            Duration.ofSeconds(10));
+                                    startValidationTimer();
+                                    openedAtNanos = System.nanoTime();
                                     Opened opened = new Opened(
                                             status.betId,
                                             open.walletId,
@@ -141,69 +170,66 @@ public class Bet {
                                             open.result);
                                     return Effect()
                                             .persist(opened)
-                                            .thenRun((State s) -> requestMarketStatus(open, sharding, context))
-                                            .thenRun((State s) -> requestFundsReservation(open, sharding, context))
+                                            .thenRun((State s) -> requestMarketStatus(s.status(), 1, validation, sharding, context))
+                                            .thenRun((State s) -> requestFundsReservation(s.status(), sharding, context))
                                             .thenReply(open.replyTo, param -> new Accepted());
                                 } else if (state instanceof OpenState openState) {
                                     if (command instanceof MarketOddsAvailable(
                                             boolean available, Optional<Double> marketOdds
                                     )) {
                                         if (available) {
-                                            return Effect()
-                                                    .persist(new MarketConfirmed(openState));
+                                            return confirm(new OddsConfirmed(), isConfirmed(openState.fundsConfirmed));
                                         } else {
-                                            return Effect()
-                                                    .persist(
-                                                            new Failed(
-                                                                    state.status().betId,
-                                                                    "market odds [" + marketOdds + "] not available"));
+                                            return failValidation(state, "market odds [" + marketOdds + "] not available");
+                                        }
+                                    } else if (command instanceof MarketStatusUnavailable(int attempt, String reason)) {
+                                        if (attempt < validation.marketStatusAttempts()) {
+                                            timers.startSingleTimer(
+                                                    "market-status",
+                                                    new RetryMarketStatus(attempt + 1),
+                                                    validation.backoff(attempt));
+                                            return Effect().none();
                                         }
+                                        return failValidation(state, String.format(
+                                                "market status not available after [%d] attempts. Reason [%s]", attempt, reason));
+                                    } else if (command instanceof RetryMarketStatus(int attempt)) {
+                                        requestMarketStatus(openState.status(), attempt, validation, sharding, context);
+                                        return Effect().none();
                                     } else if (command instanceof RequestWalletFunds(Wallet.UpdatedResponse response)) {
                                         if (response instanceof Wallet.Accepted) {
-                                            return Effect()
-                                                    .persist(new FundsGranted(openState));
+                                            return confirm(new FundsConfirmed(), isConfirmed(openState.marketConfirmed));
                                         } else if (response instanceof Wallet.Rejected) {
-                                            return Effect()
-                                                    .persist(
-                                                            new Failed(state.status().betId, "funds not available"));
+                                            return failValidation(state, "funds not available");
                                         } else {
                                             throw new IllegalArgumentException("Unknown response type");
                                         }
                                     } else if (command instanceof ValidationsTimedOut) {
-                                        if (openState.marketConfirmed.isPresent() && openState.fundsConfirmed.isPresent() &&
-                                                openState.marketConfirmed.get() && openState.fundsConfirmed.get()) {
-                                            return Effect()
-                                                    .persist(new ValidationsPassed(openState));
+                                        if (isValidated(openState)) {
+                                            // validated as the timer fired
+                                            return Effect().none();
                                         } else {
-                                            return Effect().persist(
-                                                    new Failed(
-                                                            state.status().betId,
-                                                            "validations didn't passed [" + state + "]"));
+                                            metrics.timedOut();
+                                            return failValidation(state, "validations didn't passed [" + state + "]");
                                         }
                                     } else if (command instanceof Settle settle) {
                                         boolean winner = isWinner(openState, settle.result);
                                         if (winner) {
-                                            EntityRef<Wallet.Command> entityRef = sharding.entityRefFor(Wallet.typeKey, openState.status().walletId);
-
-                                            context.ask(Wallet.UpdatedResponse.class, entityRef, Duration.ofSeconds(10)
-                                                    , param -> new Wallet.AddFunds(openState.status().stake, param),
-                                                    (response, failure) -> {
-                                                        if (response != null) {
-                                                            return new Close(String.format("stake reimbursed to wallet [%s]", entityRef));
-                                                        } else {
-                                                            String message = String.format("state NOT reimbursed to wallet [%s]. Reason [%s]", entityRef, failure.getMessage());
-                                                            context.getLog().error(message);
-                                                            return new Fail(message);
-                                                        }
-                                                    });
+                                            // Settling is written before the wallet is paid, a Settle sent again
+                                            // meanwhile is unaccepted instead of paying the winner twice
+                                            return Effect()
+                                                    .persist(new Settling(state.status().betId))
+                                                    .thenRun((State s) -> reimburse(s.status()))
+                                                    .thenReply(settle.replyTo, ignored -> new Accepted());
                                         } else {
                                             return Effect()
-                                                    .none();
+                                                    .persist(new Settled(state.status().betId))
+                                                    .thenReply(settle.replyTo, ignored -> new Accepted());
                                         }
-                                    } else if (command instanceof Close) {
-                                        return Effect()
-                                                .persist(new Closed());
                                     }
+                                } else if (state instanceof SettlingState && command instanceof Close) {
+                                    // the wallet confirmed the reimbursement
+                                    return Effect()
+                                            .persist(new Closed());
                                 }
 
                                 if (command instanceof GetState(ActorRef<Response> replyTo)) {
@@ -221,9 +247,9 @@ public class Bet {
                                 } else if (command instanceof ReplyCommand replyCommand) {
                                     return Effect()
                                             .none().thenReply(replyCommand.replyTo(), ignored -> new RequestUnaccepted(String.format("[%s] has been rejected upon the current state [%s]", replyCommand, state)));
-                                } else if (command instanceof Fail) {
+                                } else if (command instanceof Fail(String reason)) {
                                     return Effect()
-                                            .persist(new Failed(state.status().betId, String.format("Reimbursment unsuccessfull. For wallet [%s]", state.status().walletId)));
+                                            .persist(new Failed(state.status().betId, reason));
                                 } else {
                                     context.getLog().error(String.format("Invalid command [%s] in state [%s]", command, state));
                                     return Effect()
@@ -232,19 +258,71 @@ public class Bet {
                             };
                         }
 
+                        private void reimburse(Status status) {
+                            EntityRef<Wallet.Command> entityRef = sharding.entityRefFor(Wallet.typeKey, status.walletId);
+
+                            context.ask(Wallet.UpdatedResponse.class, entityRef, Duration.ofSeconds(10)
+                                    , param -> new Wallet.AddFunds(status.stake, param),
+                                    (response, failure) -> {
+                                        if (response != null) {
+                                            return new Close(String.format("stake reimbursed to wallet [%s]", entityRef));
+                                        } else {
+                                            String message = String.format("stake NOT reimbursed to wallet [%s]. Reason [%s]", entityRef, failure.getMessage());
+                                            context.getLog().error(message);
+                                            return new Fail(message);
+                                        }
+                                    });
+                        }
+
+                        private void startValidationTimer() {
+                            timers.startSingleTimer(
+                                    "lifespan",
+                                    new ValidationsTimedOut((int) validation.timeout().toSeconds()),
+                                    validation.timeout());
+                        }
+
+                        /**
+                         * The second confirmation is written along with {@link Validated}, the bet doesn't wait for
+                         * the timer.
+                         */
+                        private Effect<Event, State> confirm(Event confirmation, boolean otherConfirmed) {
+                            if (!otherConfirmed) {
+                                return Effect().persist(confirmation);
+                            }
+                            return Effect()
+                                    .persist(List.of(confirmation, new Validated()))
+                                    .thenRun((State s) -> {
+                                        timers.cancel("lifespan");
+                                        if (openedAtNanos > 0) {
+                                            metrics.validated(System.nanoTime() - openedAtNanos);
+                                        }
+                                    });
+                        }
+
+                        private Effect<Event, State> failValidation(State state, String reason) {
+                            return Effect()
+                                    .persist(new Failed(state.status().betId, reason))
+                                    .thenRun((State s) -> {
+                                        timers.cancel("lifespan");
+                                        timers.cancel("market-status");
+                                    });
+                        }
+
                         @Override
                         public EventHandler<State, Event> eventHandler() {
                             return (state, event) -> {
                                 if (event instanceof Opened(
                                         String id, String walletId, String marketId, double odds, int stake, int result
                                 )) {
-                                    return new OpenState(new Status(id, walletId, marketId, odds, stake, result), null, null);
-                                } else if (event instanceof MarketConfirmed(OpenState state1)) {
-                                    return state1.copyMarketConfirmed(true);
-                                } else if (event instanceof FundsGranted(OpenState state1)) {
-                                    return state1.copyFundsConfirmed(true);
-                                } else if (event instanceof ValidationsPassed) {
+                                    return new OpenState(new Status(id, walletId, marketId, odds, stake, result), Optional.empty(), Optional.empty());
+                                } else if (state instanceof OpenState open && event instanceof OddsConfirmed) {
+                                    return open.copyMarketConfirmed(true);
+                                } else if (state instanceof OpenState open && event instanceof FundsConfirmed) {
+                                    return open.copyFundsConfirmed(true);
+                                } else if (event instanceof Validated) {
                                     return state;
+                                } else if (event instanceof Settling) {
+                                    return new SettlingState(state.status());
                                 } else if (event instanceof Closed) {
                                     return new ClosedState(state.status());
                                 } else if (event instanceof Settled settled) {
@@ -260,28 +338,115 @@ public class Bet {
 
                         @Override
                         public Set<String> tagsFor(Event event) {
-                            tags.add(calculateTag(betId, tags));
-                            return new HashSet<>(tags);
+                            return Set.of(calculateTag(betId, tags));
+                        }
+
+                        @Override
+                        public EventAdapter<Event, ?> eventAdapter() {
+                            return new BetEventAdapter();
                         }
 
                         @Override
                         public RetentionCriteria retentionCriteria() {
                             return RetentionCriteria.snapshotEvery(100, 2);
                         }
+
+                        @Override
+                        public boolean shouldSnapshot(State state, Event event, long sequenceNr) {
+                            return isTerminal(state);
+                        }
+
+                        @Override
+                        public SignalHandler<State> signalHandler() {
+                            return newSignalHandlerBuilder()
+                                    .onSignal(SnapshotCompleted.class, (state, completed) -> passivateIfTerminal(state))
+                                    // the events are in the journal, the bet only recovers slower
+                                    .onSignal(SnapshotFailed.class, (state, failed) -> passivateIfTerminal(state))
+                                    // timers don't survive a restart and the replies to the requests sent before
+                                    // it go to the previous incarnation: a bet still validating gets a new timeout
+                                    // and sends the requests it has no confirmation for again
+                                    .onSignal(RecoveryCompleted.instance(), state -> {
+                                        if (state instanceof OpenState openState && !isValidated(openState)) {
+                                            startValidationTimer();
+                                            if (openState.marketConfirmed().isEmpty()) {
+                                                requestMarketStatus(state.status(), 1, validation, sharding, context);
+                                            }
+                                            if (openState.fundsConfirmed().isEmpty()) {
+                                                // a reservation made before the restart whose reply was lost is
+                                                // made again, as a bet sent again by its client would be
+                                                requestFundsReservation(state.status(), sharding, context);
+                                            }
+                                        } else if (state instanceof SettlingState) {
+                                            // the wallet may or may not have been paid before the restart, asking
+                                            // it again could pay twice: the bet fails for the reimbursement to be
+                                            // checked instead
+                                            String message = String.format("restarted while reimbursing wallet [%s], reimbursement unknown", state.status().walletId);
+                                            context.getLog().error(message);
+                                            context.getSelf().tell(new Fail(message));
+                                        } else {
+                                            // woken up by a command, the commands already buffered are handled
+                                            // before the shard stops it
+                                            passivateIfTerminal(state);
+                                        }
+                                    })
+                                    .build();
+                        }
+
+                        private void passivateIfTerminal(State state) {
+                            if (isTerminal(state)) {
+                                shard.tell(new ClusterSharding.Passivate<>(context.getSelf()));
+                            }
+                        }
                     };
                 })
         );
     }
 
+    private static boolean isConfirmed(Optional<Boolean> confirmation) {
+        return confirmation.isPresent() && confirmation.get();
+    }
+
+    private static boolean isValidated(OpenState state) {
+        return isConfirmed(state.marketConfirmed) && isConfirmed(state.fundsConfirmed);
+    }
+
+    public static boolean isTerminal(State state) {
+        return state instanceof ClosedState
+                || state instanceof SettledState
+                || state instanceof CancelledState
+                || state instanceof FailedState;
+    }
+
     public interface Event extends CborSerializable {
     }
 
+    public record OddsConfirmed() implements Event {
+    }
+
+    public record FundsConfirmed() implements Event {
+    }
+
+    public record Validated() implements Event {
+    }
+
+    /**
+     * Written by older versions with the whole state in it, {@link BetEventAdapter} reads it as {@link OddsConfirmed}.
+     */
+    @Deprecated
     public record MarketConfirmed(OpenState state) implements Event {
     }
 
+    /**
+     * Written by older versions, read as {@link FundsConfirmed}.
+     */
+    @Deprecated
     public record FundsGranted(OpenState state) implements Event {
     }
 
+    /**
+     * Written by older versions, read as {@link Validated}.
+     */
+    @Deprecated
     public record ValidationsPassed(OpenState state) implements Event {
     }
 
@@ -289,6 +454,12 @@ public class Bet {
                          int result) implements Event {
     }
 
+    /**
+     * A winning bet about to reimburse its wallet, {@link Closed} once the wallet confirms.
+     */
+    public record Settling(String betId) implements Event {
+    }
+
     public record Settled(String betId) implements Event {
     }
 
@@ -301,45 +472,87 @@ public class Bet {
     public record Closed() implements Event {
     }
 
+    /**
+     * A failed ask is retried with backoff up to {@code bet.validation.market-status.attempts} times.
+     */
     private static void requestMarketStatus(
-            Open command,
+            Status bet,
+            int attempt,
+            ValidationSettings validation,
             ClusterSharding sharding,
             ActorContext<Command> context) {
 
-        EntityRef<Market.Command> marketRef = sharding.entityRefFor(Market.typeKey, command.marketId);
+        Optional<Market.Status> replicated = MarketOddsView.get(context.getSystem()).lookup(bet.marketId);
+        if (replicated.isPresent()) {
+            Match matched = oddsDoMatch(replicated.get(), bet.odds);
+            context.getSelf().tell(new MarketOddsAvailable(matched.doMatch(), Optional.of(matched.marketOdds())));
+            return;
+        }
 
-        context.ask(Market.Response.class, marketRef, Duration.ofSeconds(3), Market.GetState::new
+        EntityRef<Market.Command> marketRef = sharding.entityRefFor(Market.typeKey, bet.marketId);
+
+        context.ask(Market.Response.class, marketRef, validation.marketAskTimeout(), Market.GetState::new
                 , (response, failure) -> {
                     if (response instanceof Market.CurrentState(Market.Status status1)) {
-                        Match matched = oddsDoMatch(status1, command);
+                        Match matched = oddsDoMatch(status1, bet.odds);
                         return new MarketOddsAvailable(matched.doMatch(), Optional.of(matched.marketOdds()));
+                    } else if (failure != null) {
+                        context.getLog().warn("market [{}] status not available, attempt [{}]", bet.marketId, attempt, failure);
+                        return new MarketStatusUnavailable(attempt, failure.getMessage());
                     } else {
-                        context.getLog().error(failure.getMessage());
                         return new MarketOddsAvailable(false, Optional.empty());
                     }
                 });
     }
 
 
-    private static void requestFundsReservation(Open command, ClusterSharding sharding, ActorContext<Command> context) {
-        EntityRef<Wallet.Command> walletRef = sharding.entityRefFor(Wallet.typeKey, command.walletId);
+    private static void requestFundsReservation(Status bet, ClusterSharding sharding, ActorContext<Command> context) {
+        EntityRef<Wallet.Command> walletRef = sharding.entityRefFor(Wallet.typeKey, bet.walletId);
         ActorRef<Wallet.UpdatedResponse> walletResponseMapper =
                 context.messageAdapter(Wallet.UpdatedResponse.class, RequestWalletFunds::new);
 
-        walletRef.tell(new Wallet.ReserveFunds(command.stake, walletResponseMapper));
+        walletRef.tell(new Wallet.ReserveFunds(bet.stake, walletResponseMapper));
     }
 
     private record Match(boolean doMatch, double marketOdds) {
     }
 
-    private static Match oddsDoMatch(Market.Status marketStatus, Open command) {
-        logger.debug(String.format("checking marketStatus %s matches requested odds %s", marketStatus, command.odds));
+    private static Match oddsDoMatch(Market.Status marketStatus, double odds) {
+        logger.debug(String.format("checking marketStatus %s matches requested odds %s", marketStatus, odds));
         if (marketStatus.result() == 0) {
-            return new Match(marketStatus.odds().draw() >= command.odds, marketStatus.odds().draw());
+            return new Match(marketStatus.odds().draw() >= odds, marketStatus.odds().draw());
         } else if (marketStatus.result() == 1) {
-            return new Match(marketStatus.odds().winHome() >= command.odds, marketStatus.odds().winHome());
+            return new Match(marketStatus.odds().winHome() >= odds, marketStatus.odds().winHome());
         } else {
-            return new Match(marketStatus.odds().winAway() >= command.odds, marketStatus.odds().winAway());
+            return new Match(marketStatus.odds().winAway() >= odds, marketStatus.odds().winAway());
+        }
+    }
+
+    /**
+     * {@code bet.validation}: how long a bet has to be validated and how the market status is retried.
+     */
+    private record ValidationSettings(Duration timeout, Duration marketAskTimeout, int marketStatusAttempts,
+                                      Duration minBackoff, Duration maxBackoff, double randomFactor) {
+
+        static ValidationSettings fromConfig(Config config) {
+            Config validation = config.getConfig("bet.validation");
+            Config marketStatus = validation.getConfig("market-status");
+            return new ValidationSettings(
+                    validation.getDuration("timeout"),
+                    marketStatus.getDuration("ask-timeout"),
+                    marketStatus.getInt("attempts"),
+                    marketStatus.getDuration("min-backoff"),
+                    marketStatus.getDuration("max-backoff"),
+                    marketStatus.getDouble("random-factor"));
+        }
+
+        /**
+         * Exponential backoff after the given attempt failed, as in {@link SupervisorStrategy#restartWithBackoff}.
+         */
+        Duration backoff(int attempt) {
+            double rnd = 1.0 + ThreadLocalRandom.current().nextDouble() * randomFactor;
+            double millis = Math.min(maxBackoff.toMillis(), minBackoff.toMillis() * Math.pow(2, attempt - 1)) * rnd;
+            return Duration.ofMillis((long) millis);
         }
     }
 
@@ -347,12 +560,16 @@ public class Bet {
         return state.status().result == resultFromMarket;
     }
 
-    public static final List<String> tags = new ArrayList<>(3);
-
-    static {
-        for (int i = 0; i < 3; i++) {
+    /**
+     * The tags the bet events are spread over, {@code sharding.bet.tags.size} of them.
+     */
+    public static List<String> tags(ActorSystem<?> system) {
+        int size = system.settings().config().getInt("sharding.bet.tags.size");
+        List<String> tags = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
             tags.add(String.format("bet-tag-%d", i));
         }
+        return tags;
     }
 
     private static String calculateTag(String entityId, List<String> tags) {
@@ -0,0 +1,34 @@
+package example.market.domain;
+
+import akka.persistence.typed.EventAdapter;
+import akka.persistence.typed.EventSeq;
+
+/**
+ * Reads the validation events that older versions of {@link Bet} wrote with the whole {@link Bet.OpenState} in
+ * them as the marker events written today. The state they carried is the one the bet already has on replay.
+ */
+@SuppressWarnings("deprecation")
+public class BetEventAdapter extends EventAdapter<Bet.Event, Bet.Event> {
+
+    @Override
+    public Bet.Event toJournal(Bet.Event event) {
+        return event;
+    }
+
+    @Override
+    public String manifest(Bet.Event event) {
+        return "";
+    }
+
+    @Override
+    public EventSeq<Bet.Event> fromJournal(Bet.Event event, String manifest) {
+        if (event instanceof Bet.MarketConfirmed) {
+            return EventSeq.single(new Bet.OddsConfirmed());
+        } else if (event instanceof Bet.FundsGranted) {
+            return EventSeq.single(new Bet.FundsConfirmed());
+        } else if (event instanceof Bet.ValidationsPassed) {
+            return EventSeq.single(new Bet.Validated());
+        }
+        return EventSeq.single(event);
+    }
+}
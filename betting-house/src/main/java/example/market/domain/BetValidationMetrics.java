@@ -0,0 +1,56 @@
+package example.market.domain;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency from {@link Bet.Open} to {@link Bet.Validated} of the bets validated on this node, in microseconds, and
+ * the number of bets whose validation timed out.
+ */
+public class BetValidationMetrics implements Extension {
+
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram latencies = new Histogram(3);
+    private final LongAdder timedOut = new LongAdder();
+
+    public static final ExtensionId<BetValidationMetrics> ID = new ExtensionId<>() {
+        @Override
+        public BetValidationMetrics createExtension(ActorSystem<?> system) {
+            return new BetValidationMetrics();
+        }
+    };
+
+    public static BetValidationMetrics get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private BetValidationMetrics() {
+    }
+
+    void validated(long nanos) {
+        recorder.recordValue(Math.max(0, nanos / 1_000));
+    }
+
+    void timedOut() {
+        timedOut.increment();
+    }
+
+    /**
+     * All the latencies recorded since the node started.
+     */
+    public Histogram latencies() {
+        synchronized (latencies) {
+            latencies.add(recorder.getIntervalHistogram());
+            return latencies.copy();
+        }
+    }
+
+    public long timedOutCount() {
+        return timedOut.sum();
+    }
+}
@@ -1,17 +1,23 @@
 package example.market.domain;
 
 import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.SupervisorStrategy;
+import akka.actor.typed.javadsl.Behaviors;
 import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
 import akka.persistence.typed.PersistenceId;
 import akka.persistence.typed.javadsl.CommandHandler;
+import akka.persistence.typed.javadsl.Effect;
 import akka.persistence.typed.javadsl.EventHandler;
 import akka.persistence.typed.javadsl.EventSourcedBehavior;
+import com.typesafe.config.Config;
 
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -52,6 +58,18 @@ public class Market {
     public record GetState(ActorRef<Response> replyTo) implements Command {
     }
 
+    /**
+     * Writes the coalesced updates, sent by the market to itself, local only.
+     */
+    private enum FlushUpdates implements Command {
+        INSTANCE;
+
+        @Override
+        public ActorRef<Response> replyTo() {
+            return null;
+        }
+    }
+
     public interface Response extends CborSerializable {
     }
 
@@ -92,76 +110,189 @@ public class Market {
     }
 
     public static Behavior<Command> create(String marketId) {
-        return new EventSourcedBehavior<Command, Event, State>(PersistenceId.of(typeKey.name(), marketId)
-                , SupervisorStrategy.restartWithBackoff(
-                Duration.ofSeconds(10), Duration.ofSeconds(60), 0.1)) {
-
-            @Override
-            public State emptyState() {
-                return new UninitializedState(Status.empty(marketId));
-            }
-
-            @Override
-            public CommandHandler<Command, Event, State> commandHandler() {
-                return (state, command) -> {
-                    if (state instanceof UninitializedState && command instanceof Open open) {
-                        Opened opened = new Opened(state.status().marketId, open.fixture, open.odds);
-                        return Effect().persist(opened)
-                                .thenReply(open.replyTo(), ignored -> new Accepted());
-                    } else if (state instanceof OpenState && command instanceof Update update) {
-                        Updated updated = new Updated(state.status().marketId, update.odds, update.result);
-                        return Effect().persist(updated)
-                                .thenReply(update.replyTo(), ignored -> new Accepted());
-                    } else if (state instanceof OpenState && command instanceof Close) {
-                        Closed closed = new Closed(state.status().marketId, state.status().result, OffsetDateTime.now(ZoneId.of("UTC")));
-                        return Effect().persist(closed)
-                                .thenReply(command.replyTo(), ignored -> new Accepted());
-                    } else if (command instanceof Cancel(String reason, ActorRef<Response> replyTo)) {
-                        Cancelled cancelled = new Cancelled(state.status().marketId, reason);
-                        return Effect().persist(cancelled)
-                                .thenReply(replyTo, ignored -> new Accepted());
-                    } else if (command instanceof GetState) {
-                        return Effect().none()
-                                .thenReply(command.replyTo(), ignored -> new CurrentState(state.status()));
-                    } else {
+        return Behaviors.setup(context -> create(marketId,
+                context.getSystem().settings().config().getBoolean("market.coalescing.enabled")));
+    }
+
+    /**
+     * With coalescing an update that changes nothing is acknowledged without being persisted, and the updates
+     * arriving within {@code market.coalescing.window} of the first one are merged into a single {@link Updated}.
+     * Each caller is acknowledged once the merged event is written.
+     */
+    public static Behavior<Command> create(String marketId, boolean coalescing) {
+        return Behaviors.setup(context -> Behaviors.withTimers(timers -> {
+            MarketOddsView oddsView = MarketOddsView.get(context.getSystem());
+            MarketOddsFeed oddsFeed = MarketOddsFeed.get(context.getSystem());
+            String[] tags = tags(context.getSystem());
+            Config coalescingConfig = context.getSystem().settings().config().getConfig("market.coalescing");
+            Duration window = coalescingConfig.getDuration("window");
+            int maxUpdates = coalescingConfig.getInt("max-updates");
+            return new EventSourcedBehavior<Command, Event, State>(PersistenceId.of(typeKey.name(), marketId)
+                    , SupervisorStrategy.restartWithBackoff(
+                    Duration.ofSeconds(10), Duration.ofSeconds(60), 0.1)) {
+
+                // the updates coalesced since the last write, lost with the market if it stops before writing them,
+                // their callers aren't acknowledged then
+                private Optional<Odds> pendingOdds = Optional.empty();
+                private Optional<Integer> pendingResult = Optional.empty();
+                private final List<ActorRef<Response>> pendingReplies = new ArrayList<>();
+
+                @Override
+                public State emptyState() {
+                    return new UninitializedState(Status.empty(marketId));
+                }
+
+                @Override
+                public CommandHandler<Command, Event, State> commandHandler() {
+                    return (state, command) -> {
+                        if (state instanceof UninitializedState && command instanceof Open open) {
+                            Opened opened = new Opened(state.status().marketId, open.fixture, open.odds);
+                            return Effect().persist(opened)
+                                    .thenRun((State s) -> oddsView.publish(s.status()))
+                                    .thenReply(open.replyTo(), ignored -> new Accepted());
+                        } else if (state instanceof OpenState && command instanceof Update update) {
+                            if (coalescing) {
+                                return coalesce(state, update);
+                            }
+                            Updated updated = new Updated(state.status().marketId, update.odds, update.result);
+                            return Effect().persist(updated)
+                                    .thenRun((State s) -> {
+                                        oddsView.publish(s.status());
+                                        oddsFeed.publish(s.status());
+                                    })
+                                    .thenReply(update.replyTo(), ignored -> new Accepted());
+                        } else if (command == FlushUpdates.INSTANCE) {
+                            return flush(state);
+                        } else if (state instanceof OpenState && command instanceof Close) {
+                            // the result of the coalesced updates persisted with it, not the last one written
+                            int result = pendingResult.orElse(state.status().result);
+                            Closed closed = new Closed(state.status().marketId, result, OffsetDateTime.now(ZoneId.of("UTC")));
+                            List<ActorRef<Response>> acknowledged = List.copyOf(pendingReplies);
+                            return Effect().persist(withPending(state, closed))
+                                    .thenRun((State s) -> {
+                                        acknowledged.forEach(replyTo -> replyTo.tell(new Accepted()));
+                                        oddsView.remove(marketId);
+                                    })
+                                    .thenReply(command.replyTo(), ignored -> new Accepted());
+                        } else if (command instanceof Cancel(String reason, ActorRef<Response> replyTo)) {
+                            Cancelled cancelled = new Cancelled(state.status().marketId, reason);
+                            List<ActorRef<Response>> acknowledged = List.copyOf(pendingReplies);
+                            return Effect().persist(withPending(state, cancelled))
+                                    .thenRun((State s) -> {
+                                        acknowledged.forEach(pending -> pending.tell(new Accepted()));
+                                        oddsView.remove(marketId);
+                                    })
+                                    .thenReply(replyTo, ignored -> new Accepted());
+                        } else if (command instanceof GetState) {
+                            // an ask usually means the replica missed, refresh it for the next ones unless it's fresh
+                            if (state instanceof OpenState) {
+                                oddsView.refresh(state.status());
+                            }
+                            return Effect().none()
+                                    .thenReply(command.replyTo(), ignored -> new CurrentState(state.status()));
+                        } else {
+                            return Effect().none()
+                                    .thenReply(command.replyTo(), ignored ->
+                                            new RequestUnaccepted("[" + command + "] is not allowed upon state [" + state + "]"));
+                        }
+                    };
+                }
+
+                private Effect<Event, State> coalesce(State state, Update update) {
+                    if (pendingReplies.isEmpty() && changesNothing(state.status(), update.odds, update.result)) {
+                        return Effect().reply(update.replyTo(), new Accepted());
+                    }
+                    if (update.odds.isPresent()) {
+                        pendingOdds = update.odds;
+                    }
+                    if (update.result.isPresent()) {
+                        pendingResult = update.result;
+                    }
+                    pendingReplies.add(update.replyTo());
+                    if (pendingReplies.size() >= maxUpdates) {
+                        return flush(state);
+                    }
+                    if (pendingReplies.size() == 1) {
+                        timers.startSingleTimer(FlushUpdates.INSTANCE, window);
+                    }
+                    return Effect().none();
+                }
+
+                /**
+                 * Writes the coalesced updates as one {@link Updated}, or nothing if together they change nothing.
+                 */
+                private Effect<Event, State> flush(State state) {
+                    List<ActorRef<Response>> acknowledged = List.copyOf(pendingReplies);
+                    List<Event> events = withPending(state, null);
+                    if (events.isEmpty()) {
                         return Effect().none()
-                                .thenReply(command.replyTo(), ignored ->
-                                        new RequestUnaccepted("[" + command + "] is not allowed upon state [" + state + "]"));
+                                .thenRun((State s) -> acknowledged.forEach(replyTo -> replyTo.tell(new Accepted())));
                     }
-                };
-            }
-
-            @Override
-            public EventHandler<State, Event> eventHandler() {
-                return (state, event) -> {
-                    if (event instanceof Opened(String id, Fixture fixture, Odds odds)) {
-                        return new OpenState(new Status(id, fixture, odds, 0));
-                    } else if (state instanceof OpenState(Status status) && event instanceof Updated updated) {
-                        return new OpenState(new Status(status.marketId
-                                , status.fixture
-                                , updated.odds
-                                .orElse(status.odds)
-                                , updated.result
-                                .orElse(status.result)));
-                    } else if (state instanceof OpenState(Status status) && event instanceof Closed closed) {
-                        return new ClosedState(status.copy(closed.result));
-                    } else if (event instanceof Cancelled) {
-                        return new CancelledState(state.status());
+                    return Effect().persist(events)
+                            .thenRun((State s) -> {
+                                oddsView.publish(s.status());
+                                oddsFeed.publish(s.status());
+                                acknowledged.forEach(replyTo -> replyTo.tell(new Accepted()));
+                            });
+                }
+
+                /**
+                 * The coalesced updates that change the market, if any, then the event, if any. Clears them.
+                 */
+                private List<Event> withPending(State state, Event event) {
+                    List<Event> events = new ArrayList<>(2);
+                    if (!pendingReplies.isEmpty()) {
+                        timers.cancel(FlushUpdates.INSTANCE);
+                        if (!changesNothing(state.status(), pendingOdds, pendingResult)) {
+                            events.add(new Updated(state.status().marketId, pendingOdds, pendingResult));
+                        }
+                        pendingOdds = Optional.empty();
+                        pendingResult = Optional.empty();
+                        pendingReplies.clear();
                     }
-                    return state;
-                };
-            }
-
-            @Override
-            public Set<String> tagsFor(Event event) {
-                return Set.of(calculateTag(marketId, tags));
-            }
+                    if (event != null) {
+                        events.add(event);
+                    }
+                    return events;
+                }
+
+                @Override
+                public EventHandler<State, Event> eventHandler() {
+                    return (state, event) -> {
+                        if (event instanceof Opened(String id, Fixture fixture, Odds odds)) {
+                            return new OpenState(new Status(id, fixture, odds, 0));
+                        } else if (state instanceof OpenState(Status status) && event instanceof Updated updated) {
+                            return new OpenState(new Status(status.marketId
+                                    , status.fixture
+                                    , updated.odds
+                                    .orElse(status.odds)
+                                    , updated.result
+                                    .orElse(status.result)));
+                        } else if (state instanceof OpenState(Status status) && event instanceof Closed closed) {
+                            return new ClosedState(status.copy(closed.result));
+                        } else if (event instanceof Cancelled) {
+                            return new CancelledState(state.status());
+                        }
+                        return state;
+                    };
+                }
+
+                @Override
+                public Set<String> tagsFor(Event event) {
+                    return Set.of(calculateTag(marketId, tags));
+                }
+
+                @Override
+                public akka.persistence.typed.javadsl.RetentionCriteria retentionCriteria() {
+                    return akka.persistence.typed.javadsl.RetentionCriteria.snapshotEvery(100, 2);
+                }
+            };
+        }));
+    }
 
-            @Override
-            public akka.persistence.typed.javadsl.RetentionCriteria retentionCriteria() {
-                return akka.persistence.typed.javadsl.RetentionCriteria.snapshotEvery(100, 2);
-            }
-        };
+    private static boolean changesNothing(Status status, Optional<Odds> odds, Optional<Integer> result) {
+        return odds.map(status.odds::equals).orElse(true)
+                && result.map(r -> r == status.result).orElse(true);
     }
 
     public interface Event extends CborSerializable {
@@ -180,12 +311,15 @@ public class Market {
     public record Cancelled(String marketId, String reason) implements Event {
     }
 
-    public static final String[] tags = new String[3];
-
-    static {
+    /**
+     * The tags the market events are spread over, {@code sharding.market.tags.size} of them.
+     */
+    public static String[] tags(ActorSystem<?> system) {
+        String[] tags = new String[system.settings().config().getInt("sharding.market.tags.size")];
         for (int i = 0; i < tags.length; i++) {
             tags[i] = "market-tag-" + i;
         }
+        return tags;
     }
 
     private static String calculateTag(String entityId, String[] tags) {
@@ -0,0 +1,126 @@
+package example.market.domain;
+
+import akka.NotUsed;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.actor.typed.pubsub.PubSub;
+import akka.actor.typed.pubsub.Topic;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Source;
+import akka.stream.typed.javadsl.ActorSource;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live odds of the markets, one cluster {@link Topic} per market.
+ * <p>
+ * {@link Market} publishes its status once per persisted {@link Market.Updated}, whatever the number of subscribers.
+ * The topic sends it once to each node with subscribers to that market, and the topic instance of the node hands it
+ * to each local subscriber. A subscriber keeps only the latest {@code market-odds-feed.subscriber-buffer} statuses
+ * it hasn't taken yet, a slow one skips the intermediate odds instead of buffering them.
+ * <p>
+ * The topic actor of a market stops itself once it had no local subscriber and nothing published for
+ * {@code market-odds-feed.topic-ttl}, a node doesn't keep one per market it ever saw.
+ */
+public class MarketOddsFeed implements Extension {
+
+    public record Stats(long subscribers, long published, long dropped) {
+    }
+
+    private final boolean enabled;
+    private final int subscriberBuffer;
+    private final Duration topicTtl;
+    private final PubSub pubSub;
+
+    private final LongAdder subscribers = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public static final ExtensionId<MarketOddsFeed> ID = new ExtensionId<>() {
+        @Override
+        public MarketOddsFeed createExtension(ActorSystem<?> system) {
+            return new MarketOddsFeed(system);
+        }
+    };
+
+    public static MarketOddsFeed get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private MarketOddsFeed(ActorSystem<?> system) {
+        Config config = system.settings().config().getConfig("market-odds-feed");
+        this.enabled = config.getBoolean("enabled");
+        this.subscriberBuffer = config.getInt("subscriber-buffer");
+        this.topicTtl = config.getDuration("topic-ttl");
+        this.pubSub = PubSub.get(system);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void publish(Market.Status status) {
+        if (!enabled) {
+            return;
+        }
+        topicFor(status.marketId()).tell(Topic.publish(new MarketOddsView.MarketOdds(status, System.currentTimeMillis())));
+        published.increment();
+    }
+
+    /**
+     * The statuses published for the market from now on, until the stream is cancelled.
+     */
+    public Source<Market.Status, NotUsed> subscribe(String marketId) {
+        if (!enabled) {
+            return Source.empty();
+        }
+        return ActorSource.<MarketOddsView.MarketOdds>actorRef(
+                        odds -> false,
+                        odds -> Optional.empty(),
+                        subscriberBuffer,
+                        OverflowStrategy.dropHead())
+                .mapMaterializedValue(subscriber -> {
+                    // the topic watches the subscriber, it's dropped once its stream stops
+                    topicFor(marketId).tell(Topic.subscribe(subscriber));
+                    subscribers.increment();
+                    return NotUsed.getInstance();
+                })
+                .watchTermination((notUsed, done) -> {
+                    done.whenComplete((ignored, failure) -> subscribers.decrement());
+                    return notUsed;
+                })
+                // the buffer of the subscriber, kept here rather than in the actor source to count what it drops
+                .conflateWithSeed(odds -> {
+                    Deque<MarketOddsView.MarketOdds> buffered = new ArrayDeque<>(subscriberBuffer);
+                    buffered.add(odds);
+                    return buffered;
+                }, (buffered, odds) -> {
+                    if (buffered.size() >= subscriberBuffer) {
+                        buffered.removeFirst();
+                        dropped.increment();
+                    }
+                    buffered.add(odds);
+                    return buffered;
+                })
+                .mapConcat(buffered -> buffered)
+                .map(MarketOddsView.MarketOdds::status);
+    }
+
+    /**
+     * Subscribers on this node, statuses published from it and statuses its subscribers skipped.
+     */
+    public Stats stats() {
+        return new Stats(subscribers.sum(), published.sum(), dropped.sum());
+    }
+
+    private ActorRef<Topic.Command<MarketOddsView.MarketOdds>> topicFor(String marketId) {
+        return pubSub.topic(MarketOddsView.MarketOdds.class, "market-odds-" + marketId, topicTtl);
+    }
+}
@@ -0,0 +1,226 @@
+package example.market.domain;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.LWWMapKey;
+import akka.cluster.ddata.SelfUniqueAddress;
+import akka.cluster.ddata.typed.javadsl.DistributedData;
+import akka.cluster.ddata.typed.javadsl.Replicator;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local replica of the status of every open market, replicated across the cluster with Distributed Data.
+ * <p>
+ * {@link Market} writes its status here when it changes, or when it's asked for it and the entry is about to go
+ * stale, so {@link Bet} can validate odds without a hop to the market shard. The markets are spread over several
+ * {@link LWWMap}s to keep each gossiped entry small. An entry older than {@code market-odds-view.max-staleness}
+ * counts as a miss, and the bet falls back to asking the market, which refreshes the entry for everybody else.
+ * <p>
+ * The replicas are only read locally, so a bet on another node accepts the previous odds until its replica is
+ * notified of the change: after {@code akka.cluster.distributed-data.gossip-interval} plus
+ * {@code notify-subscribers-interval} for a status written locally, and never later than {@code max-staleness} after
+ * the previous status was written. A status lowering any of the odds, the one the house loses on, is written to a
+ * majority of the nodes, whose replicas are notified after {@code notify-subscribers-interval} alone; the other
+ * nodes still wait for the gossip.
+ */
+public class MarketOddsView implements Extension {
+
+    public record MarketOdds(Market.Status status, long publishedAtMillis) implements CborSerializable {
+    }
+
+    public record Stats(long hits, long misses, long stale) {
+    }
+
+    private final boolean enabled;
+    private final long maxStalenessMillis;
+    private final long republishAfterMillis;
+    private final Replicator.WriteConsistency lowerOddsWrite;
+    private final ActorRef<Replicator.Command> replicator;
+    private final SelfUniqueAddress node;
+    private final ActorSystem<?> system;
+    private final LWWMapKey<String, MarketOdds>[] keys;
+    private final ConcurrentHashMap<String, MarketOdds>[] replicas;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+
+    public static final ExtensionId<MarketOddsView> ID = new ExtensionId<>() {
+        @Override
+        public MarketOddsView createExtension(ActorSystem<?> system) {
+            return new MarketOddsView(system);
+        }
+    };
+
+    public static MarketOddsView get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MarketOddsView(ActorSystem<?> system) {
+        Config config = system.settings().config().getConfig("market-odds-view");
+        this.system = system;
+        this.enabled = config.getBoolean("enabled");
+        this.maxStalenessMillis = config.getDuration("max-staleness").toMillis();
+        this.republishAfterMillis = maxStalenessMillis / 2;
+        this.lowerOddsWrite = new Replicator.WriteMajority(config.getDuration("lower-odds-write-timeout"));
+        Config ddata = system.settings().config().getConfig("akka.cluster.distributed-data");
+        Duration replicationDelay = ddata.getDuration("gossip-interval")
+                .plus(ddata.getDuration("notify-subscribers-interval"));
+        if (maxStalenessMillis < replicationDelay.toMillis()) {
+            throw new IllegalArgumentException("market-odds-view.max-staleness [" + config.getDuration("max-staleness")
+                    + "] is below the replication delay of distributed data [" + replicationDelay + "]");
+        }
+        this.replicator = DistributedData.get(system).replicator();
+        this.node = DistributedData.get(system).selfUniqueAddress();
+
+        int partitions = config.getInt("partitions");
+        this.keys = new LWWMapKey[partitions];
+        this.replicas = new ConcurrentHashMap[partitions];
+        for (int i = 0; i < partitions; i++) {
+            keys[i] = LWWMapKey.create("market-odds-" + i);
+            replicas[i] = new ConcurrentHashMap<>();
+        }
+
+        if (enabled) {
+            system.systemActorOf(subscriber(), "market-odds-view", Props.empty());
+        }
+    }
+
+    private Behavior<Replicator.SubscribeResponse<LWWMap<String, MarketOdds>>> subscriber() {
+        return Behaviors.setup(context -> {
+            for (LWWMapKey<String, MarketOdds> key : keys) {
+                replicator.tell(new Replicator.Subscribe<>(key, context.getSelf()));
+            }
+            return Behaviors.receiveMessage(response -> {
+                if (response instanceof Replicator.Changed<LWWMap<String, MarketOdds>> changed) {
+                    update(replicas[partition(changed.key().id())], changed.dataValue().getEntries());
+                }
+                return Behaviors.same();
+            });
+        });
+    }
+
+    /**
+     * Replaces the entries that changed and drops the removed ones, instead of copying the whole partition.
+     */
+    private static void update(ConcurrentHashMap<String, MarketOdds> replica, Map<String, MarketOdds> entries) {
+        entries.forEach((marketId, odds) -> {
+            if (!odds.equals(replica.get(marketId))) {
+                replica.put(marketId, odds);
+            }
+        });
+        // the replica holds every entry now, any other key was removed
+        if (replica.size() > entries.size()) {
+            replica.keySet().retainAll(entries.keySet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes the status locally, it reaches the other nodes with the next gossip. Lower odds are written to a
+     * majority.
+     */
+    public void publish(Market.Status status) {
+        if (!enabled) {
+            return;
+        }
+        MarketOdds odds = new MarketOdds(status, System.currentTimeMillis());
+        MarketOdds previous = replicas[partitionFor(status.marketId())].get(status.marketId());
+        replicator.tell(new Replicator.Update<>(
+                keyFor(status.marketId()),
+                LWWMap.create(),
+                previous != null && lowers(previous.status().odds(), status.odds())
+                        ? lowerOddsWrite
+                        : Replicator.writeLocal(),
+                system.ignoreRef(),
+                current -> current.put(node, status.marketId(), odds)));
+    }
+
+    /**
+     * Writes the current status of the market again unless the replica already has it, written less than half of
+     * max-staleness ago.
+     */
+    public void refresh(Market.Status status) {
+        if (!enabled) {
+            return;
+        }
+        MarketOdds replicated = replicas[partitionFor(status.marketId())].get(status.marketId());
+        if (replicated == null || !replicated.status().equals(status)
+                || System.currentTimeMillis() - replicated.publishedAtMillis() >= republishAfterMillis) {
+            publish(status);
+        }
+    }
+
+    /**
+     * Removes a market that won't take bets anymore.
+     */
+    public void remove(String marketId) {
+        if (!enabled) {
+            return;
+        }
+        replicator.tell(new Replicator.Update<>(
+                keyFor(marketId),
+                LWWMap.create(),
+                Replicator.writeLocal(),
+                system.ignoreRef(),
+                current -> current.remove(node, marketId)));
+    }
+
+    /**
+     * The replicated status of the market, if there is one fresh enough.
+     */
+    public Optional<Market.Status> lookup(String marketId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        MarketOdds odds = replicas[partitionFor(marketId)].get(marketId);
+        if (odds == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - odds.publishedAtMillis() > maxStalenessMillis) {
+            stale.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(odds.status());
+    }
+
+    private static boolean lowers(Market.Odds previous, Market.Odds odds) {
+        return odds.winHome() < previous.winHome()
+                || odds.winAway() < previous.winAway()
+                || odds.draw() < previous.draw();
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), stale.sum());
+    }
+
+    private LWWMapKey<String, MarketOdds> keyFor(String marketId) {
+        return keys[partitionFor(marketId)];
+    }
+
+    private int partitionFor(String marketId) {
+        return Math.abs(marketId.hashCode() % keys.length);
+    }
+
+    private int partition(String keyId) {
+        return Integer.parseInt(keyId.substring("market-odds-".length()));
+    }
+}
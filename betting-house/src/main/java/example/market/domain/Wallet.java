@@ -1,17 +1,25 @@
 package example.market.domain;
 
 import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.SupervisorStrategy;
+import akka.actor.typed.Terminated;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
 import akka.persistence.typed.PersistenceId;
 import akka.persistence.typed.javadsl.CommandHandler;
+import akka.persistence.typed.javadsl.Effect;
 import akka.persistence.typed.javadsl.EventHandler;
 import akka.persistence.typed.javadsl.EventSourcedBehavior;
 import akka.persistence.typed.javadsl.RetentionCriteria;
+import com.typesafe.config.Config;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Set;
 
 public class Wallet {
@@ -30,6 +38,18 @@ public class Wallet {
     public record CheckFunds(ActorRef<Response> replyTo) implements Command {
     }
 
+    /**
+     * Sent by the group commit front to the event sourced wallet, local only.
+     */
+    private record ApplyBatch(List<Command> commands, ActorRef<BatchApplied> replyTo) implements Command {
+    }
+
+    private record BatchApplied(int size) implements Command {
+    }
+
+    private record BatchFailed(Throwable failure) implements Command {
+    }
+
     public interface Event extends CborSerializable {
     }
 
@@ -61,68 +81,173 @@ public class Wallet {
     }
 
     public static Behavior<Command> create(String walletId) {
-        return Behaviors.setup(context ->
-                new EventSourcedBehavior<Command, Event, State>(PersistenceId.of(typeKey.name(), walletId)
-                        , SupervisorStrategy.restartWithBackoff(Duration.ofSeconds(10), Duration.ofSeconds(60), 0.1)) {
+        return Behaviors.setup(context -> create(walletId,
+                context.getSystem().settings().config().getBoolean("wallet.group-commit.enabled")));
+    }
 
-                    @Override
-                    public State emptyState() {
-                        return new State(0);
-                    }
+    /**
+     * With group commit the reservations and additions that arrive while a write is in flight are queued, then
+     * checked in order against the running balance and written together with a single persist of all their events.
+     * Each caller still gets its own reply, once the whole group is written.
+     */
+    public static Behavior<Command> create(String walletId, boolean groupCommit) {
+        if (groupCommit) {
+            return groupCommit(walletId);
+        }
+        return eventSourced(walletId);
+    }
+
+    private static Behavior<Command> groupCommit(String walletId) {
+        return Behaviors.setup(context -> {
+            Config config = context.getSystem().settings().config().getConfig("wallet.group-commit");
+            int maxGroup = config.getInt("max-group-size");
+            Duration writeTimeout = config.getDuration("write-timeout");
+            ActorRef<Command> wallet = context.spawn(eventSourced(walletId), "wallet");
+            // the wallet stops when it can't recover or a write is rejected, the entity stops with it so sharding
+            // starts both again with the next command instead of queueing for a wallet that's gone
+            context.watch(wallet);
+            Deque<Command> queued = new ArrayDeque<>();
+            boolean[] writing = {false};
+
+            Runnable writeNext = () -> {
+                if (queued.isEmpty()) {
+                    writing[0] = false;
+                    return;
+                }
+                List<Command> group = new ArrayList<>(Math.min(maxGroup, queued.size()));
+                while (!queued.isEmpty() && group.size() < maxGroup) {
+                    group.add(queued.poll());
+                }
+                writing[0] = true;
+                // on a timeout the callers' own asks time out, the wallet carries on with the next group
+                context.ask(BatchApplied.class, wallet, writeTimeout,
+                        replyTo -> new ApplyBatch(group, replyTo),
+                        (applied, failure) -> applied != null ? applied : new BatchFailed(failure));
+            };
 
-                    @Override
-                    public CommandHandler<Command, Event, State> commandHandler() {
-                        return (state, command) -> {
-                            if (command instanceof ReserveFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
-                                if (amount <= state.balance) {
-                                    return Effect().persist(new FundsReserved(amount))
-                                            .thenReply(replyTo, s -> new Accepted());
-                                } else {
-                                    return Effect().persist(new FundsReservationDenied(amount))
-                                            .thenReply(replyTo, s -> new Rejected());
-                                }
-                            } else if (command instanceof AddFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
-                                return Effect().persist(new FundsAdded(amount))
+            return Behaviors.receive(Command.class)
+                    .onMessage(CheckFunds.class, command -> {
+                        wallet.tell(command);
+                        return Behaviors.same();
+                    })
+                    .onMessage(BatchApplied.class, applied -> {
+                        writeNext.run();
+                        return Behaviors.same();
+                    })
+                    .onMessage(BatchFailed.class, failed -> {
+                        context.getLog().warn("group write of wallet [{}] not confirmed", walletId, failed.failure());
+                        writeNext.run();
+                        return Behaviors.same();
+                    })
+                    .onSignal(Terminated.class, terminated -> {
+                        context.getLog().error("wallet [{}] stopped, dropping [{}] queued commands", walletId, queued.size());
+                        return Behaviors.stopped();
+                    })
+                    .onAnyMessage(command -> {
+                        queued.add(command);
+                        if (!writing[0]) {
+                            writeNext.run();
+                        }
+                        return Behaviors.same();
+                    })
+                    .build();
+        });
+    }
+
+    private static Behavior<Command> eventSourced(String walletId) {
+        return Behaviors.setup(context -> {
+            String[] tags = tags(context.getSystem());
+            return new EventSourcedBehavior<Command, Event, State>(PersistenceId.of(typeKey.name(), walletId)
+                    , SupervisorStrategy.restartWithBackoff(Duration.ofSeconds(10), Duration.ofSeconds(60), 0.1)) {
+
+                @Override
+                public State emptyState() {
+                    return new State(0);
+                }
+
+                @Override
+                public CommandHandler<Command, Event, State> commandHandler() {
+                    return (state, command) -> {
+                        if (command instanceof ReserveFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
+                            if (amount <= state.balance) {
+                                return Effect().persist(new FundsReserved(amount))
                                         .thenReply(replyTo, s -> new Accepted());
-                            } else if (command instanceof CheckFunds(ActorRef<Response> replyTo)) {
-                                return Effect().reply(replyTo, new CurrentBalance(state.balance));
+                            } else {
+                                return Effect().persist(new FundsReservationDenied(amount))
+                                        .thenReply(replyTo, s -> new Rejected());
                             }
-                            return Effect().none();
-                        };
-                    }
+                        } else if (command instanceof AddFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
+                            return Effect().persist(new FundsAdded(amount))
+                                    .thenReply(replyTo, s -> new Accepted());
+                        } else if (command instanceof CheckFunds(ActorRef<Response> replyTo)) {
+                            return Effect().reply(replyTo, new CurrentBalance(state.balance));
+                        } else if (command instanceof ApplyBatch(List<Command> commands, ActorRef<BatchApplied> replyTo)) {
+                            return applyBatch(state, commands, replyTo);
+                        }
+                        return Effect().none();
+                    };
+                }
 
-                    @Override
-                    public EventHandler<State, Event> eventHandler() {
-                        return (state, event) -> {
-                            if (event instanceof FundsReserved(int amount)) {
-                                return new State(state.balance - amount);
-                            } else if (event instanceof FundsAdded(int amount)) {
-                                return new State(state.balance + amount);
-                            } else if (event instanceof FundsReservationDenied) {
-                                return state;
+                private Effect<Event, State> applyBatch(State state, List<Command> commands, ActorRef<BatchApplied> batchReplyTo) {
+                    List<Event> events = new ArrayList<>(commands.size());
+                    List<Runnable> replies = new ArrayList<>(commands.size());
+                    int balance = state.balance;
+                    for (Command command : commands) {
+                        if (command instanceof ReserveFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
+                            if (amount <= balance) {
+                                balance -= amount;
+                                events.add(new FundsReserved(amount));
+                                replies.add(() -> replyTo.tell(new Accepted()));
+                            } else {
+                                events.add(new FundsReservationDenied(amount));
+                                replies.add(() -> replyTo.tell(new Rejected()));
                             }
-                            return state;
-                        };
+                        } else if (command instanceof AddFunds(int amount, ActorRef<UpdatedResponse> replyTo)) {
+                            balance += amount;
+                            events.add(new FundsAdded(amount));
+                            replies.add(() -> replyTo.tell(new Accepted()));
+                        }
                     }
+                    return Effect().persist(events)
+                            .thenRun(s -> {
+                                replies.forEach(Runnable::run);
+                                batchReplyTo.tell(new BatchApplied(commands.size()));
+                            });
+                }
 
-                    @Override
-                    public Set<String> tagsFor(Event event) {
-                        return Set.of(calculateTag(walletId, tags));
-                    }
+                @Override
+                public EventHandler<State, Event> eventHandler() {
+                    return (state, event) -> {
+                        if (event instanceof FundsReserved(int amount)) {
+                            return new State(state.balance - amount);
+                        } else if (event instanceof FundsAdded(int amount)) {
+                            return new State(state.balance + amount);
+                        } else if (event instanceof FundsReservationDenied) {
+                            return state;
+                        }
+                        return state;
+                    };
+                }
 
-                    @Override
-                    public RetentionCriteria retentionCriteria() {
-                        return RetentionCriteria.snapshotEvery(100, 2);
-                    }
-                });
-    }
+                @Override
+                public Set<String> tagsFor(Event event) {
+                    return Set.of(calculateTag(walletId, tags));
+                }
 
-    private static final String[] tags = new String[3];
+                @Override
+                public RetentionCriteria retentionCriteria() {
+                    return RetentionCriteria.snapshotEvery(100, 2);
+                }
+            };
+        });
+    }
 
-    static {
+    private static String[] tags(ActorSystem<?> system) {
+        String[] tags = new String[system.settings().config().getInt("sharding.wallet.tags.size")];
         for (int i = 0; i < tags.length; i++) {
             tags[i] = "wallet-tag-" + i;
         }
+        return tags;
     }
 
     private static String calculateTag(String entityId, String[] tags) {
@@ -0,0 +1,580 @@
+package example.market.domain.serialization;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorRefResolver;
+import akka.actor.typed.javadsl.Adapter;
+import akka.serialization.SerializerWithStringManifest;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import example.market.domain.Bet;
+import example.market.domain.Market;
+import example.market.domain.MarketOddsView;
+import example.market.domain.Wallet;
+import example.market.domain.proto.BetMessages;
+import example.market.domain.proto.MarketMessages;
+import example.market.domain.proto.WalletMessages;
+
+import java.io.NotSerializableException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * Protobuf serializer for the commands, responses, events and states of {@link Bet}, {@link Market} and
+ * {@link Wallet}. The schemas are in {@code src/main/protobuf/domain}.
+ * <p>
+ * Journal rows written before with jackson-cbor keep their serializer id, so Akka still reads them with the
+ * Jackson serializer. Only new rows and messages are written with this one.
+ */
+@SuppressWarnings("deprecation")
+public class DomainProtobufSerializer extends SerializerWithStringManifest {
+
+    private static final String BET_OPEN = "bet.Open";
+    private static final String BET_SETTLE = "bet.Settle";
+    private static final String BET_CANCEL = "bet.Cancel";
+    private static final String BET_GET_STATE = "bet.GetState";
+    private static final String BET_ACCEPTED = "bet.Accepted";
+    private static final String BET_REQUEST_UNACCEPTED = "bet.RequestUnaccepted";
+    private static final String BET_CURRENT_STATE = "bet.CurrentState";
+    private static final String BET_STATE = "bet.State";
+    private static final String BET_OPENED = "bet.Opened";
+    private static final String BET_ODDS_CONFIRMED = "bet.OddsConfirmed";
+    private static final String BET_FUNDS_CONFIRMED = "bet.FundsConfirmed";
+    private static final String BET_VALIDATED = "bet.Validated";
+    // written by older versions only, see BetEventAdapter
+    private static final String BET_MARKET_CONFIRMED = "bet.MarketConfirmed";
+    private static final String BET_FUNDS_GRANTED = "bet.FundsGranted";
+    private static final String BET_VALIDATIONS_PASSED = "bet.ValidationsPassed";
+    private static final String BET_SETTLING = "bet.Settling";
+    private static final String BET_SETTLED = "bet.Settled";
+    private static final String BET_CANCELLED = "bet.Cancelled";
+    private static final String BET_FAILED = "bet.Failed";
+    private static final String BET_CLOSED = "bet.Closed";
+
+    private static final String MARKET_OPEN = "market.Open";
+    private static final String MARKET_UPDATE = "market.Update";
+    private static final String MARKET_CLOSE = "market.Close";
+    private static final String MARKET_CANCEL = "market.Cancel";
+    private static final String MARKET_GET_STATE = "market.GetState";
+    private static final String MARKET_ACCEPTED = "market.Accepted";
+    private static final String MARKET_CURRENT_STATE = "market.CurrentState";
+    private static final String MARKET_REQUEST_UNACCEPTED = "market.RequestUnaccepted";
+    private static final String MARKET_STATE = "market.State";
+    private static final String MARKET_OPENED = "market.Opened";
+    private static final String MARKET_UPDATED = "market.Updated";
+    private static final String MARKET_CLOSED = "market.Closed";
+    private static final String MARKET_CANCELLED = "market.Cancelled";
+    private static final String MARKET_ODDS = "market.MarketOdds";
+
+    private static final String WALLET_RESERVE_FUNDS = "wallet.ReserveFunds";
+    private static final String WALLET_ADD_FUNDS = "wallet.AddFunds";
+    private static final String WALLET_CHECK_FUNDS = "wallet.CheckFunds";
+    private static final String WALLET_ACCEPTED = "wallet.Accepted";
+    private static final String WALLET_REJECTED = "wallet.Rejected";
+    private static final String WALLET_CURRENT_BALANCE = "wallet.CurrentBalance";
+    private static final String WALLET_STATE = "wallet.State";
+    private static final String WALLET_FUNDS_RESERVED = "wallet.FundsReserved";
+    private static final String WALLET_FUNDS_ADDED = "wallet.FundsAdded";
+    private static final String WALLET_FUNDS_RESERVATION_DENIED = "wallet.FundsReservationDenied";
+
+    private final ActorRefResolver resolver;
+
+    public DomainProtobufSerializer(ExtendedActorSystem system) {
+        this.resolver = ActorRefResolver.get(Adapter.toTyped(system));
+    }
+
+    @Override
+    public int identifier() {
+        return 8101;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        return switch (o) {
+            case Bet.Open m -> BET_OPEN;
+            case Bet.Settle m -> BET_SETTLE;
+            case Bet.Cancel m -> BET_CANCEL;
+            case Bet.GetState m -> BET_GET_STATE;
+            case Bet.Accepted m -> BET_ACCEPTED;
+            case Bet.RequestUnaccepted m -> BET_REQUEST_UNACCEPTED;
+            case Bet.CurrentState m -> BET_CURRENT_STATE;
+            case Bet.State m -> BET_STATE;
+            case Bet.Opened m -> BET_OPENED;
+            case Bet.OddsConfirmed m -> BET_ODDS_CONFIRMED;
+            case Bet.FundsConfirmed m -> BET_FUNDS_CONFIRMED;
+            case Bet.Validated m -> BET_VALIDATED;
+            case Bet.MarketConfirmed m -> BET_MARKET_CONFIRMED;
+            case Bet.FundsGranted m -> BET_FUNDS_GRANTED;
+            case Bet.ValidationsPassed m -> BET_VALIDATIONS_PASSED;
+            case Bet.Settling m -> BET_SETTLING;
+            case Bet.Settled m -> BET_SETTLED;
+            case Bet.Cancelled m -> BET_CANCELLED;
+            case Bet.Failed m -> BET_FAILED;
+            case Bet.Closed m -> BET_CLOSED;
+
+            case Market.Open m -> MARKET_OPEN;
+            case Market.Update m -> MARKET_UPDATE;
+            case Market.Close m -> MARKET_CLOSE;
+            case Market.Cancel m -> MARKET_CANCEL;
+            case Market.GetState m -> MARKET_GET_STATE;
+            case Market.Accepted m -> MARKET_ACCEPTED;
+            case Market.CurrentState m -> MARKET_CURRENT_STATE;
+            case Market.RequestUnaccepted m -> MARKET_REQUEST_UNACCEPTED;
+            case Market.State m -> MARKET_STATE;
+            case Market.Opened m -> MARKET_OPENED;
+            case Market.Updated m -> MARKET_UPDATED;
+            case Market.Closed m -> MARKET_CLOSED;
+            case Market.Cancelled m -> MARKET_CANCELLED;
+            case MarketOddsView.MarketOdds m -> MARKET_ODDS;
+
+            case Wallet.ReserveFunds m -> WALLET_RESERVE_FUNDS;
+            case Wallet.AddFunds m -> WALLET_ADD_FUNDS;
+            case Wallet.CheckFunds m -> WALLET_CHECK_FUNDS;
+            case Wallet.Accepted m -> WALLET_ACCEPTED;
+            case Wallet.Rejected m -> WALLET_REJECTED;
+            case Wallet.CurrentBalance m -> WALLET_CURRENT_BALANCE;
+            case Wallet.State m -> WALLET_STATE;
+            case Wallet.FundsReserved m -> WALLET_FUNDS_RESERVED;
+            case Wallet.FundsAdded m -> WALLET_FUNDS_ADDED;
+            case Wallet.FundsReservationDenied m -> WALLET_FUNDS_RESERVATION_DENIED;
+
+            default -> throw new IllegalArgumentException("Can't serialize object of type " + o.getClass());
+        };
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        return toProto(o).toByteArray();
+    }
+
+    private Message toProto(Object o) {
+        return switch (o) {
+            case Bet.Open m -> BetMessages.Open.newBuilder()
+                    .setWalletId(m.walletId())
+                    .setMarketId(m.marketId())
+                    .setOdds(m.odds())
+                    .setStake(m.stake())
+                    .setResult(m.result())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Bet.Settle m -> BetMessages.Settle.newBuilder()
+                    .setResult(m.result())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Bet.Cancel m -> BetMessages.Cancel.newBuilder()
+                    .setReason(m.reason())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Bet.GetState m -> BetMessages.GetState.newBuilder()
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Bet.Accepted m -> BetMessages.Accepted.getDefaultInstance();
+            case Bet.RequestUnaccepted m -> BetMessages.RequestUnaccepted.newBuilder()
+                    .setReason(m.reason())
+                    .build();
+            case Bet.CurrentState m -> BetMessages.CurrentState.newBuilder()
+                    .setState(betState(m.state()))
+                    .build();
+            case Bet.State m -> betState(m);
+            case Bet.Opened m -> BetMessages.Opened.newBuilder()
+                    .setBetId(m.betId())
+                    .setWalletId(m.walletId())
+                    .setMarketId(m.marketId())
+                    .setOdds(m.odds())
+                    .setStake(m.stake())
+                    .setResult(m.result())
+                    .build();
+            case Bet.OddsConfirmed m -> BetMessages.OddsConfirmed.getDefaultInstance();
+            case Bet.FundsConfirmed m -> BetMessages.FundsConfirmed.getDefaultInstance();
+            case Bet.Validated m -> BetMessages.Validated.getDefaultInstance();
+            case Bet.MarketConfirmed m -> BetMessages.MarketConfirmed.newBuilder()
+                    .setState(betState(m.state()))
+                    .build();
+            case Bet.FundsGranted m -> BetMessages.FundsGranted.newBuilder()
+                    .setState(betState(m.state()))
+                    .build();
+            case Bet.ValidationsPassed m -> BetMessages.ValidationsPassed.newBuilder()
+                    .setState(betState(m.state()))
+                    .build();
+            case Bet.Settling m -> BetMessages.Settling.newBuilder()
+                    .setBetId(m.betId())
+                    .build();
+            case Bet.Settled m -> BetMessages.Settled.newBuilder()
+                    .setBetId(m.betId())
+                    .build();
+            case Bet.Cancelled m -> BetMessages.Cancelled.newBuilder()
+                    .setBetId(m.betId())
+                    .setReason(m.reason())
+                    .build();
+            case Bet.Failed m -> BetMessages.Failed.newBuilder()
+                    .setBetId(m.betId())
+                    .setReason(m.reason())
+                    .build();
+            case Bet.Closed m -> BetMessages.Closed.getDefaultInstance();
+
+            case Market.Open m -> MarketMessages.Open.newBuilder()
+                    .setFixture(fixture(m.fixture()))
+                    .setOdds(odds(m.odds()))
+                    .setOpensAt(timestamp(m.opensAt()))
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Market.Update m -> {
+                MarketMessages.Update.Builder builder = MarketMessages.Update.newBuilder()
+                        .setReplyTo(toRef(m.replyTo()));
+                m.odds().ifPresent(odds -> builder.setOdds(odds(odds)));
+                m.opensAt().ifPresent(opensAt -> builder.setOpensAt(timestamp(opensAt)));
+                m.result().ifPresent(builder::setResult);
+                yield builder.build();
+            }
+            case Market.Close m -> MarketMessages.Close.newBuilder()
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Market.Cancel m -> MarketMessages.Cancel.newBuilder()
+                    .setReason(m.reason())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Market.GetState m -> MarketMessages.GetState.newBuilder()
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Market.Accepted m -> MarketMessages.Accepted.getDefaultInstance();
+            case Market.CurrentState m -> MarketMessages.CurrentState.newBuilder()
+                    .setStatus(marketStatus(m.status()))
+                    .build();
+            case Market.RequestUnaccepted m -> MarketMessages.RequestUnaccepted.newBuilder()
+                    .setReason(m.reason())
+                    .build();
+            case Market.State m -> marketState(m);
+            case Market.Opened m -> MarketMessages.Opened.newBuilder()
+                    .setMarketId(m.marketId())
+                    .setFixture(fixture(m.fixture()))
+                    .setOdds(odds(m.odds()))
+                    .build();
+            case Market.Updated m -> {
+                MarketMessages.Updated.Builder builder = MarketMessages.Updated.newBuilder()
+                        .setMarketId(m.marketId());
+                m.odds().ifPresent(odds -> builder.setOdds(odds(odds)));
+                m.result().ifPresent(builder::setResult);
+                yield builder.build();
+            }
+            case Market.Closed m -> MarketMessages.Closed.newBuilder()
+                    .setMarketId(m.marketId())
+                    .setResult(m.result())
+                    .setAt(timestamp(m.at()))
+                    .build();
+            case Market.Cancelled m -> MarketMessages.Cancelled.newBuilder()
+                    .setMarketId(m.marketId())
+                    .setReason(m.reason())
+                    .build();
+            case MarketOddsView.MarketOdds m -> MarketMessages.MarketOdds.newBuilder()
+                    .setStatus(marketStatus(m.status()))
+                    .setPublishedAtMillis(m.publishedAtMillis())
+                    .build();
+
+            case Wallet.ReserveFunds m -> WalletMessages.ReserveFunds.newBuilder()
+                    .setAmount(m.amount())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Wallet.AddFunds m -> WalletMessages.AddFunds.newBuilder()
+                    .setAmount(m.amount())
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Wallet.CheckFunds m -> WalletMessages.CheckFunds.newBuilder()
+                    .setReplyTo(toRef(m.replyTo()))
+                    .build();
+            case Wallet.Accepted m -> WalletMessages.Accepted.getDefaultInstance();
+            case Wallet.Rejected m -> WalletMessages.Rejected.getDefaultInstance();
+            case Wallet.CurrentBalance m -> WalletMessages.CurrentBalance.newBuilder()
+                    .setAmount(m.amount())
+                    .build();
+            case Wallet.State m -> WalletMessages.WalletState.newBuilder()
+                    .setBalance(m.balance())
+                    .build();
+            case Wallet.FundsReserved m -> WalletMessages.FundsReserved.newBuilder()
+                    .setAmount(m.amount())
+                    .build();
+            case Wallet.FundsAdded m -> WalletMessages.FundsAdded.newBuilder()
+                    .setAmount(m.amount())
+                    .build();
+            case Wallet.FundsReservationDenied m -> WalletMessages.FundsReservationDenied.newBuilder()
+                    .setAmount(m.amount())
+                    .build();
+
+            default -> throw new IllegalArgumentException("Can't serialize object of type " + o.getClass());
+        };
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        try {
+            return switch (manifest) {
+                case BET_OPEN -> {
+                    BetMessages.Open m = BetMessages.Open.parseFrom(bytes);
+                    yield new Bet.Open(m.getWalletId(), m.getMarketId(), m.getOdds(), m.getStake(), m.getResult(),
+                            fromRef(m.getReplyTo()));
+                }
+                case BET_SETTLE -> {
+                    BetMessages.Settle m = BetMessages.Settle.parseFrom(bytes);
+                    yield new Bet.Settle(m.getResult(), fromRef(m.getReplyTo()));
+                }
+                case BET_CANCEL -> {
+                    BetMessages.Cancel m = BetMessages.Cancel.parseFrom(bytes);
+                    yield new Bet.Cancel(m.getReason(), fromRef(m.getReplyTo()));
+                }
+                case BET_GET_STATE -> new Bet.GetState(fromRef(BetMessages.GetState.parseFrom(bytes).getReplyTo()));
+                case BET_ACCEPTED -> new Bet.Accepted();
+                case BET_REQUEST_UNACCEPTED ->
+                        new Bet.RequestUnaccepted(BetMessages.RequestUnaccepted.parseFrom(bytes).getReason());
+                case BET_CURRENT_STATE -> new Bet.CurrentState(betState(BetMessages.CurrentState.parseFrom(bytes).getState()));
+                case BET_STATE -> betState(BetMessages.BetState.parseFrom(bytes));
+                case BET_OPENED -> {
+                    BetMessages.Opened m = BetMessages.Opened.parseFrom(bytes);
+                    yield new Bet.Opened(m.getBetId(), m.getWalletId(), m.getMarketId(), m.getOdds(), m.getStake(),
+                            m.getResult());
+                }
+                case BET_ODDS_CONFIRMED -> new Bet.OddsConfirmed();
+                case BET_FUNDS_CONFIRMED -> new Bet.FundsConfirmed();
+                case BET_VALIDATED -> new Bet.Validated();
+                case BET_MARKET_CONFIRMED ->
+                        new Bet.MarketConfirmed(openState(BetMessages.MarketConfirmed.parseFrom(bytes).getState()));
+                case BET_FUNDS_GRANTED ->
+                        new Bet.FundsGranted(openState(BetMessages.FundsGranted.parseFrom(bytes).getState()));
+                case BET_VALIDATIONS_PASSED ->
+                        new Bet.ValidationsPassed(openState(BetMessages.ValidationsPassed.parseFrom(bytes).getState()));
+                case BET_SETTLING -> new Bet.Settling(BetMessages.Settling.parseFrom(bytes).getBetId());
+                case BET_SETTLED -> new Bet.Settled(BetMessages.Settled.parseFrom(bytes).getBetId());
+                case BET_CANCELLED -> {
+                    BetMessages.Cancelled m = BetMessages.Cancelled.parseFrom(bytes);
+                    yield new Bet.Cancelled(m.getBetId(), m.getReason());
+                }
+                case BET_FAILED -> {
+                    BetMessages.Failed m = BetMessages.Failed.parseFrom(bytes);
+                    yield new Bet.Failed(m.getBetId(), m.getReason());
+                }
+                case BET_CLOSED -> new Bet.Closed();
+
+                case MARKET_OPEN -> {
+                    MarketMessages.Open m = MarketMessages.Open.parseFrom(bytes);
+                    yield new Market.Open(fixture(m.getFixture()), odds(m.getOdds()), offsetDateTime(m.getOpensAt()),
+                            fromRef(m.getReplyTo()));
+                }
+                case MARKET_UPDATE -> {
+                    MarketMessages.Update m = MarketMessages.Update.parseFrom(bytes);
+                    yield new Market.Update(
+                            m.hasOdds() ? Optional.of(odds(m.getOdds())) : Optional.empty(),
+                            m.hasOpensAt() ? Optional.of(offsetDateTime(m.getOpensAt())) : Optional.empty(),
+                            m.hasResult() ? Optional.of(m.getResult()) : Optional.empty(),
+                            fromRef(m.getReplyTo()));
+                }
+                case MARKET_CLOSE -> new Market.Close(fromRef(MarketMessages.Close.parseFrom(bytes).getReplyTo()));
+                case MARKET_CANCEL -> {
+                    MarketMessages.Cancel m = MarketMessages.Cancel.parseFrom(bytes);
+                    yield new Market.Cancel(m.getReason(), fromRef(m.getReplyTo()));
+                }
+                case MARKET_GET_STATE -> new Market.GetState(fromRef(MarketMessages.GetState.parseFrom(bytes).getReplyTo()));
+                case MARKET_ACCEPTED -> new Market.Accepted();
+                case MARKET_CURRENT_STATE ->
+                        new Market.CurrentState(marketStatus(MarketMessages.CurrentState.parseFrom(bytes).getStatus()));
+                case MARKET_REQUEST_UNACCEPTED ->
+                        new Market.RequestUnaccepted(MarketMessages.RequestUnaccepted.parseFrom(bytes).getReason());
+                case MARKET_STATE -> marketState(MarketMessages.MarketState.parseFrom(bytes));
+                case MARKET_OPENED -> {
+                    MarketMessages.Opened m = MarketMessages.Opened.parseFrom(bytes);
+                    yield new Market.Opened(m.getMarketId(), fixture(m.getFixture()), odds(m.getOdds()));
+                }
+                case MARKET_UPDATED -> {
+                    MarketMessages.Updated m = MarketMessages.Updated.parseFrom(bytes);
+                    yield new Market.Updated(
+                            m.getMarketId(),
+                            m.hasOdds() ? Optional.of(odds(m.getOdds())) : Optional.empty(),
+                            m.hasResult() ? Optional.of(m.getResult()) : Optional.empty());
+                }
+                case MARKET_CLOSED -> {
+                    MarketMessages.Closed m = MarketMessages.Closed.parseFrom(bytes);
+                    yield new Market.Closed(m.getMarketId(), m.getResult(), offsetDateTime(m.getAt()));
+                }
+                case MARKET_CANCELLED -> {
+                    MarketMessages.Cancelled m = MarketMessages.Cancelled.parseFrom(bytes);
+                    yield new Market.Cancelled(m.getMarketId(), m.getReason());
+                }
+                case MARKET_ODDS -> {
+                    MarketMessages.MarketOdds m = MarketMessages.MarketOdds.parseFrom(bytes);
+                    yield new MarketOddsView.MarketOdds(marketStatus(m.getStatus()), m.getPublishedAtMillis());
+                }
+
+                case WALLET_RESERVE_FUNDS -> {
+                    WalletMessages.ReserveFunds m = WalletMessages.ReserveFunds.parseFrom(bytes);
+                    yield new Wallet.ReserveFunds(m.getAmount(), fromRef(m.getReplyTo()));
+                }
+                case WALLET_ADD_FUNDS -> {
+                    WalletMessages.AddFunds m = WalletMessages.AddFunds.parseFrom(bytes);
+                    yield new Wallet.AddFunds(m.getAmount(), fromRef(m.getReplyTo()));
+                }
+                case WALLET_CHECK_FUNDS -> new Wallet.CheckFunds(fromRef(WalletMessages.CheckFunds.parseFrom(bytes).getReplyTo()));
+                case WALLET_ACCEPTED -> new Wallet.Accepted();
+                case WALLET_REJECTED -> new Wallet.Rejected();
+                case WALLET_CURRENT_BALANCE ->
+                        new Wallet.CurrentBalance(WalletMessages.CurrentBalance.parseFrom(bytes).getAmount());
+                case WALLET_STATE -> new Wallet.State(WalletMessages.WalletState.parseFrom(bytes).getBalance());
+                case WALLET_FUNDS_RESERVED ->
+                        new Wallet.FundsReserved(WalletMessages.FundsReserved.parseFrom(bytes).getAmount());
+                case WALLET_FUNDS_ADDED -> new Wallet.FundsAdded(WalletMessages.FundsAdded.parseFrom(bytes).getAmount());
+                case WALLET_FUNDS_RESERVATION_DENIED ->
+                        new Wallet.FundsReservationDenied(WalletMessages.FundsReservationDenied.parseFrom(bytes).getAmount());
+
+                default -> throw new NotSerializableException("Unknown manifest [" + manifest + "]");
+            };
+        } catch (InvalidProtocolBufferException e) {
+            throw new NotSerializableException("Can't deserialize [" + manifest + "]: " + e.getMessage());
+        }
+    }
+
+    private String toRef(ActorRef<?> ref) {
+        return resolver.toSerializationFormat(ref);
+    }
+
+    private <T> ActorRef<T> fromRef(String ref) {
+        return resolver.resolveActorRef(ref);
+    }
+
+    private static BetMessages.BetStatus betStatus(Bet.Status status) {
+        return BetMessages.BetStatus.newBuilder()
+                .setBetId(status.betId())
+                .setWalletId(status.walletId())
+                .setMarketId(status.marketId())
+                .setOdds(status.odds())
+                .setStake(status.stake())
+                .setResult(status.result())
+                .build();
+    }
+
+    private static Bet.Status betStatus(BetMessages.BetStatus status) {
+        return new Bet.Status(status.getBetId(), status.getWalletId(), status.getMarketId(), status.getOdds(),
+                status.getStake(), status.getResult());
+    }
+
+    private static BetMessages.BetState betState(Bet.State state) {
+        BetMessages.BetState.Builder builder = BetMessages.BetState.newBuilder()
+                .setStatus(betStatus(state.status()));
+        switch (state) {
+            case Bet.UninitializedState s -> builder.setKind(BetMessages.BetState.Kind.UNINITIALIZED);
+            case Bet.OpenState s -> {
+                builder.setKind(BetMessages.BetState.Kind.OPEN);
+                // OpenState is created with null confirmations until each validation comes in
+                if (s.marketConfirmed() != null) {
+                    s.marketConfirmed().ifPresent(builder::setMarketConfirmed);
+                }
+                if (s.fundsConfirmed() != null) {
+                    s.fundsConfirmed().ifPresent(builder::setFundsConfirmed);
+                }
+            }
+            case Bet.SettlingState s -> builder.setKind(BetMessages.BetState.Kind.SETTLING);
+            case Bet.SettledState s -> builder.setKind(BetMessages.BetState.Kind.SETTLED);
+            case Bet.CancelledState s -> builder.setKind(BetMessages.BetState.Kind.CANCELLED);
+            case Bet.FailedState s -> builder.setKind(BetMessages.BetState.Kind.FAILED).setReason(s.reason());
+            case Bet.ClosedState s -> builder.setKind(BetMessages.BetState.Kind.CLOSED);
+            default -> throw new IllegalArgumentException("Unknown bet state " + state.getClass());
+        }
+        return builder.build();
+    }
+
+    private static Bet.State betState(BetMessages.BetState state) {
+        Bet.Status status = betStatus(state.getStatus());
+        return switch (state.getKind()) {
+            case UNINITIALIZED -> new Bet.UninitializedState(status);
+            case OPEN -> openState(state);
+            case SETTLING -> new Bet.SettlingState(status);
+            case SETTLED -> new Bet.SettledState(status);
+            case CANCELLED -> new Bet.CancelledState(status);
+            case FAILED -> new Bet.FailedState(status, state.getReason());
+            case CLOSED -> new Bet.ClosedState(status);
+            default -> throw new IllegalArgumentException("Unknown bet state kind " + state.getKind());
+        };
+    }
+
+    private static Bet.OpenState openState(BetMessages.BetState state) {
+        return new Bet.OpenState(
+                betStatus(state.getStatus()),
+                state.hasMarketConfirmed() ? Optional.of(state.getMarketConfirmed()) : Optional.empty(),
+                state.hasFundsConfirmed() ? Optional.of(state.getFundsConfirmed()) : Optional.empty());
+    }
+
+    private static MarketMessages.Fixture fixture(Market.Fixture fixture) {
+        return MarketMessages.Fixture.newBuilder()
+                .setId(fixture.id())
+                .setHomeTeam(fixture.homeTeam())
+                .setAwayTeam(fixture.awayTeam())
+                .build();
+    }
+
+    private static Market.Fixture fixture(MarketMessages.Fixture fixture) {
+        return new Market.Fixture(fixture.getId(), fixture.getHomeTeam(), fixture.getAwayTeam());
+    }
+
+    private static MarketMessages.Odds odds(Market.Odds odds) {
+        return MarketMessages.Odds.newBuilder()
+                .setWinHome(odds.winHome())
+                .setWinAway(odds.winAway())
+                .setDraw(odds.draw())
+                .build();
+    }
+
+    private static Market.Odds odds(MarketMessages.Odds odds) {
+        return new Market.Odds(odds.getWinHome(), odds.getWinAway(), odds.getDraw());
+    }
+
+    private static MarketMessages.MarketStatus marketStatus(Market.Status status) {
+        return MarketMessages.MarketStatus.newBuilder()
+                .setMarketId(status.marketId())
+                .setFixture(fixture(status.fixture()))
+                .setOdds(odds(status.odds()))
+                .setResult(status.result())
+                .build();
+    }
+
+    private static Market.Status marketStatus(MarketMessages.MarketStatus status) {
+        return new Market.Status(status.getMarketId(), fixture(status.getFixture()), odds(status.getOdds()),
+                status.getResult());
+    }
+
+    private static MarketMessages.MarketState marketState(Market.State state) {
+        MarketMessages.MarketState.Kind kind = switch (state) {
+            case Market.UninitializedState s -> MarketMessages.MarketState.Kind.UNINITIALIZED;
+            case Market.OpenState s -> MarketMessages.MarketState.Kind.OPEN;
+            case Market.ClosedState s -> MarketMessages.MarketState.Kind.CLOSED;
+            case Market.CancelledState s -> MarketMessages.MarketState.Kind.CANCELLED;
+            default -> throw new IllegalArgumentException("Unknown market state " + state.getClass());
+        };
+        return MarketMessages.MarketState.newBuilder()
+                .setKind(kind)
+                .setStatus(marketStatus(state.status()))
+                .build();
+    }
+
+    private static Market.State marketState(MarketMessages.MarketState state) {
+        Market.Status status = marketStatus(state.getStatus());
+        return switch (state.getKind()) {
+            case UNINITIALIZED -> new Market.UninitializedState(status);
+            case OPEN -> new Market.OpenState(status);
+            case CLOSED -> new Market.ClosedState(status);
+            case CANCELLED -> new Market.CancelledState(status);
+            default -> throw new IllegalArgumentException("Unknown market state kind " + state.getKind());
+        };
+    }
+
+    private static MarketMessages.Timestamp timestamp(OffsetDateTime dateTime) {
+        Instant instant = dateTime.toInstant();
+        return MarketMessages.Timestamp.newBuilder()
+                .setEpochSeconds(instant.getEpochSecond())
+                .setNanos(instant.getNano())
+                .setOffsetSeconds(dateTime.getOffset().getTotalSeconds())
+                .build();
+    }
+
+    private static OffsetDateTime offsetDateTime(MarketMessages.Timestamp timestamp) {
+        return OffsetDateTime.ofInstant(
+                Instant.ofEpochSecond(timestamp.getEpochSeconds(), timestamp.getNanos()),
+                ZoneOffset.ofTotalSeconds(timestamp.getOffsetSeconds()));
+    }
+}
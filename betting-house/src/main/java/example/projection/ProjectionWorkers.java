@@ -0,0 +1,132 @@
+package example.projection;
+
+import akka.Done;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.actor.typed.Terminated;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.cluster.sharding.typed.ChangeNumberOfProcesses;
+import akka.cluster.sharding.typed.ShardedDaemonProcessCommand;
+import akka.cluster.sharding.typed.ShardedDaemonProcessSettings;
+import akka.cluster.sharding.typed.javadsl.ShardedDaemonProcess;
+import akka.projection.Projection;
+import akka.projection.ProjectionBehavior;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Runs one projection per tag, spread over a number of workers in a {@link ShardedDaemonProcess}.
+ * <p>
+ * The tags are the unit of parallelism and each of them keeps its own offset, so the number of workers can change
+ * on a running system: the daemon process stops every worker and starts the new ones, and each projection resumes
+ * from its stored offset.
+ */
+public class ProjectionWorkers implements Extension {
+
+    public interface Command {
+    }
+
+    public enum Stop implements Command {
+        INSTANCE
+    }
+
+    private final ActorSystem<?> system;
+    private final Map<String, ActorRef<ShardedDaemonProcessCommand>> processes = new ConcurrentHashMap<>();
+
+    public static final ExtensionId<ProjectionWorkers> ID = new ExtensionId<>() {
+        @Override
+        public ProjectionWorkers createExtension(ActorSystem<?> system) {
+            return new ProjectionWorkers(system);
+        }
+    };
+
+    public static ProjectionWorkers get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private ProjectionWorkers(ActorSystem<?> system) {
+        this.system = system;
+    }
+
+    public <Envelope> void init(String name,
+                                List<String> tags,
+                                int workers,
+                                Function<String, Projection<Envelope>> projectionForTag) {
+        ActorRef<ShardedDaemonProcessCommand> process = ShardedDaemonProcess.get(system).initWithContext(
+                Command.class,
+                name,
+                workers,
+                context -> worker(tagsOf(tags, context.processNumber(), context.totalProcesses())
+                        .stream()
+                        .map(projectionForTag)
+                        .toList()),
+                ShardedDaemonProcessSettings.create(system),
+                Optional.<Command>of(Stop.INSTANCE));
+        processes.put(name, process);
+    }
+
+    /**
+     * Changes the number of workers of a projection started with {@link #init}.
+     */
+    public CompletionStage<Done> rescale(String name, int workers) {
+        ActorRef<ShardedDaemonProcessCommand> process = processes.get(name);
+        if (process == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("unknown projection [" + name + "]"));
+        }
+        return AskPattern.askWithStatus(
+                process,
+                replyTo -> new ChangeNumberOfProcesses(workers, replyTo),
+                Duration.ofSeconds(30),
+                system.scheduler());
+    }
+
+    private static List<String> tagsOf(List<String> tags, int worker, int workers) {
+        List<String> assigned = new ArrayList<>();
+        for (int i = worker; i < tags.size(); i += workers) {
+            assigned.add(tags.get(i));
+        }
+        return assigned;
+    }
+
+    private static <Envelope> Behavior<Command> worker(List<Projection<Envelope>> projections) {
+        return Behaviors.setup(context -> {
+            List<ActorRef<ProjectionBehavior.Command>> running = new ArrayList<>();
+            for (Projection<Envelope> projection : projections) {
+                ActorRef<ProjectionBehavior.Command> ref = context.spawn(
+                        ProjectionBehavior.create(projection),
+                        projection.projectionId().id() + "-" + projection.projectionId().key());
+                context.watch(ref);
+                running.add(ref);
+            }
+
+            return Behaviors.receive(Command.class)
+                    .onMessage(Stop.class, stop -> {
+                        if (running.isEmpty()) {
+                            return Behaviors.stopped();
+                        }
+                        running.forEach(ref -> ref.tell(ProjectionBehavior.stopMessage()));
+                        return stopping(running.size());
+                    })
+                    .build();
+        });
+    }
+
+    private static Behavior<Command> stopping(int remaining) {
+        return Behaviors.receive(Command.class)
+                .onSignal(Terminated.class, terminated ->
+                        remaining == 1 ? Behaviors.stopped() : stopping(remaining - 1))
+                .build();
+    }
+}
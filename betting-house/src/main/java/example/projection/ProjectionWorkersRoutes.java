@@ -0,0 +1,46 @@
+package example.projection;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.PathMatchers;
+import akka.http.javadsl.server.Route;
+import akka.http.javadsl.unmarshalling.StringUnmarshallers;
+import akka.management.javadsl.ManagementRouteProvider;
+import akka.management.javadsl.ManagementRouteProviderSettings;
+
+import static akka.http.javadsl.server.Directives.*;
+
+/**
+ * Akka Management route to change the number of workers of a projection:
+ * {@code PUT /projections/<name>/workers?count=<n>}, a 400 for an {@code n} that isn't an integer of at least 1.
+ * It's only exposed when the management routes aren't read-only.
+ */
+public class ProjectionWorkersRoutes implements ManagementRouteProvider {
+
+    private final ActorSystem<?> system;
+
+    public ProjectionWorkersRoutes(ExtendedActorSystem system) {
+        this.system = Adapter.toTyped(system);
+    }
+
+    @Override
+    public Route routes(ManagementRouteProviderSettings settings) {
+        if (settings.readOnly()) {
+            return reject();
+        }
+        return path(PathMatchers.segment("projections").slash(PathMatchers.segment()).slash("workers"), name ->
+                put(() ->
+                        parameter(StringUnmarshallers.INTEGER, "count", count -> count < 1
+                                ? complete(StatusCodes.BAD_REQUEST, "[" + name + "] needs at least one worker")
+                                : onSuccess(ProjectionWorkers.get(system).rescale(name, count)
+                                                .handle((done, failure) -> failure == null
+                                                        ? complete(StatusCodes.OK, "[" + name + "] running with [" + count + "] workers")
+                                                        : complete(StatusCodes.BAD_REQUEST, failure.getMessage())),
+                                        route -> route)
+                        )
+                )
+        );
+    }
+}
@@ -0,0 +1,193 @@
+package example.projection;
+
+import akka.Done;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
+import akka.persistence.query.Offset;
+import akka.persistence.r2dbc.query.javadsl.R2dbcReadJournal;
+import akka.projection.Projection;
+import akka.projection.ProjectionId;
+import akka.projection.eventsourced.EventEnvelope;
+import akka.projection.eventsourced.javadsl.EventSourcedProvider;
+import akka.projection.javadsl.AtLeastOnceProjection;
+import akka.projection.javadsl.Handler;
+import akka.projection.javadsl.SourceProvider;
+import akka.projection.jdbc.javadsl.JdbcHandler;
+import akka.projection.r2dbc.javadsl.R2dbcProjection;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * The projections of the r2dbc {@code persistence-backend}. Its journal has no {@code eventsByTag}: the events of an
+ * entity type are split into as many slice ranges as the type has tags, and each range is a projection of its own
+ * with its offsets in the r2dbc offset store. The ranges are spread over the {@link ProjectionWorkers} like the tags.
+ * <p>
+ * The handlers of the tagged projections are reused, at least once: each envelope is handed to them as an
+ * {@link EventEnvelope} of akka-projection-eventsourced, and a {@link JdbcHandler} gets a read-side transaction of
+ * its own per envelope, see {@link #inJdbcTransaction}.
+ */
+public final class SliceProjections {
+
+    private SliceProjections() {
+    }
+
+    public static boolean enabled(ActorSystem<?> system) {
+        return "r2dbc".equals(system.settings().config().getString("persistence-backend.name"));
+    }
+
+    /**
+     * @param name            of the projection workers and of the projections
+     * @param entityType      of the {@link akka.persistence.typed.PersistenceId} of the entities projected
+     * @param ranges          number of slice ranges
+     * @param saveEachOffset  store the offset of every envelope once processed, instead of every few envelopes
+     */
+    public static <Event> void init(ActorSystem<?> system,
+                                    String name,
+                                    String entityType,
+                                    int ranges,
+                                    int workers,
+                                    boolean saveEachOffset,
+                                    Supplier<Handler<EventEnvelope<Event>>> handler) {
+        List<String> keys = EventSourcedProvider.sliceRanges(system, R2dbcReadJournal.Identifier(), ranges)
+                .stream()
+                .map(range -> range.first() + "-" + range.second())
+                .toList();
+
+        ProjectionWorkers.get(system).init(
+                name,
+                keys,
+                workers,
+                key -> createProjection(system, name, entityType, key, saveEachOffset, handler));
+    }
+
+    private static <Event> Projection<akka.persistence.query.typed.EventEnvelope<Event>> createProjection(
+            ActorSystem<?> system,
+            String name,
+            String entityType,
+            String key,
+            boolean saveEachOffset,
+            Supplier<Handler<EventEnvelope<Event>>> handler) {
+
+        String[] range = key.split("-");
+        SourceProvider<Offset, akka.persistence.query.typed.EventEnvelope<Event>> sourceProvider =
+                EventSourcedProvider.eventsBySlices(
+                        system,
+                        R2dbcReadJournal.Identifier(),
+                        entityType,
+                        Integer.parseInt(range[0]),
+                        Integer.parseInt(range[1]));
+
+        AtLeastOnceProjection<Offset, akka.persistence.query.typed.EventEnvelope<Event>> projection =
+                R2dbcProjection.atLeastOnceAsync(
+                        ProjectionId.of(name, key),
+                        Optional.empty(),
+                        sourceProvider,
+                        () -> new SliceHandler<>(handler.get()),
+                        system);
+        if (saveEachOffset) {
+            return projection.withSaveOffset(1, Duration.ZERO);
+        }
+        return projection;
+    }
+
+    /**
+     * Runs a handler of the JDBC projections in a read-side session of its own per envelope, on the JDBC
+     * dispatcher, committed once the envelope is processed.
+     */
+    public static <Envelope> Handler<Envelope> inJdbcTransaction(
+            ActorSystem<?> system,
+            JdbcHandler<Envelope, QueryDSLJdbcSession> handler) {
+        return new JdbcTransactionHandler<>(system, handler);
+    }
+
+    private static final class SliceHandler<Event> extends Handler<akka.persistence.query.typed.EventEnvelope<Event>> {
+
+        private final Handler<EventEnvelope<Event>> delegate;
+
+        SliceHandler(Handler<EventEnvelope<Event>> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletionStage<Done> start() {
+            return delegate.start();
+        }
+
+        @Override
+        public CompletionStage<Done> process(akka.persistence.query.typed.EventEnvelope<Event> envelope) {
+            return delegate.process(EventEnvelope.create(
+                    envelope.offset(),
+                    envelope.persistenceId(),
+                    envelope.sequenceNr(),
+                    envelope.event(),
+                    envelope.timestamp()));
+        }
+
+        @Override
+        public CompletionStage<Done> stop() {
+            return delegate.stop();
+        }
+    }
+
+    private static final class JdbcTransactionHandler<Envelope> extends Handler<Envelope> {
+
+        private final Logger logger = LoggerFactory.getLogger(JdbcTransactionHandler.class);
+        private final ActorSystem<?> system;
+        private final JdbcHandler<Envelope, QueryDSLJdbcSession> delegate;
+        private final Executor jdbcExecutor;
+
+        JdbcTransactionHandler(ActorSystem<?> system, JdbcHandler<Envelope, QueryDSLJdbcSession> delegate) {
+            this.system = system;
+            this.delegate = delegate;
+            this.jdbcExecutor = system.dispatchers().lookup(DispatcherSelector.fromConfig("akka.projection.jdbc.blocking-jdbc-dispatcher"));
+        }
+
+        @Override
+        public CompletionStage<Done> start() {
+            delegate.start();
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+
+        @Override
+        public CompletionStage<Done> process(Envelope envelope) {
+            return CompletableFuture.supplyAsync(() -> {
+                QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+                try {
+                    delegate.process(session, envelope);
+                    session.commit();
+                    return Done.getInstance();
+                } catch (Exception e) {
+                    try {
+                        session.rollback();
+                    } catch (Exception rollbackFailure) {
+                        e.addSuppressed(rollbackFailure);
+                    }
+                    throw new CompletionException(e);
+                } finally {
+                    try {
+                        session.close();
+                    } catch (Exception e) {
+                        logger.warn("failed to release the read-side connection", e);
+                    }
+                }
+            }, jdbcExecutor);
+        }
+
+        @Override
+        public CompletionStage<Done> stop() {
+            delegate.stop();
+            return CompletableFuture.completedFuture(Done.getInstance());
+        }
+    }
+}
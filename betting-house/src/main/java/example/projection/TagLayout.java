@@ -0,0 +1,132 @@
+package example.projection;
+
+import akka.actor.typed.ActorSystem;
+import com.typesafe.config.Config;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Guards the tag count of an entity type on a journal already written to.
+ * <p>
+ * An entity's tag is its id hashed over {@code sharding.<type>.tags.size}. Changing the size moves the later events
+ * of most entities to another tag, read by another projection at its own pace: a bet's Closed can then be projected
+ * before its Opened. The first start of a tagged projection records its tag count in {@code projection_tags}, the
+ * later ones refuse to start with another count, unless {@code sharding.check-tags-size} is off, e.g. for a journal
+ * that was drained and whose offsets were reset.
+ * <p>
+ * The stored offsets alone can't tell the count: a tag has no offset until it projected an event, so a sparse
+ * journal shows fewer tags than it was written with. Without a recorded count, e.g. on a database created before
+ * {@code projection_tags}, only an offset of a tag beyond the count refuses the start.
+ */
+public final class TagLayout {
+
+    private static final Logger log = LoggerFactory.getLogger(TagLayout.class);
+
+    private static final String UNDEFINED_TABLE = "42P01";
+
+    private TagLayout() {
+    }
+
+    /**
+     * @param projectionName as in the {@link akka.projection.ProjectionId} of the tagged projections
+     * @param tags           the tags of the entity type, the tag index as their suffix
+     * @param sizePath       the setting of the tag count
+     */
+    public static void check(ActorSystem<?> system, String projectionName, List<String> tags, String sizePath) {
+        Config config = system.settings().config();
+        if (!config.getBoolean("sharding.check-tags-size")) {
+            return;
+        }
+        try (Connection connection = ReadSideDataSource.get(system).acquire()) {
+            int highest = highestTag(connection, config.getString("akka.projection.jdbc.offset-store.table"),
+                    projectionName);
+            if (highest >= tags.size()) {
+                throw refused(projectionName, "at least " + (highest + 1), sizePath, tags.size());
+            }
+            OptionalInt recorded;
+            try {
+                recorded = recordedTags(connection, projectionName);
+                if (recorded.isEmpty()) {
+                    record(connection, projectionName, tags.size());
+                    recorded = recordedTags(connection, projectionName);
+                }
+            } catch (SQLException e) {
+                if (!UNDEFINED_TABLE.equals(e.getSQLState())) {
+                    throw e;
+                }
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                }
+                log.warn("no projection_tags table to record the tag count of [{}], only the offsets of tags " +
+                        "beyond [{}] are refused, see optional/projection-tags.sql", projectionName, tags.size());
+                return;
+            }
+            if (recorded.isPresent() && recorded.getAsInt() != tags.size()) {
+                throw refused(projectionName, String.valueOf(recorded.getAsInt()), sizePath, tags.size());
+            }
+        } catch (SQLException e) {
+            log.warn("can't read the offsets of [{}] to check the tag count, starting it anyway", projectionName, e);
+        }
+    }
+
+    private static IllegalStateException refused(String projectionName, String stored, String sizePath, int size) {
+        return new IllegalStateException(String.format(
+                "[%s] has offsets for [%s] tags but [%s] = [%d]. Changing the tag count of a journal in use " +
+                        "moves the entities to other tags and reorders their events across projections. " +
+                        "Set it back, or drain the journal, reset the offsets, delete the row of [%s] from " +
+                        "projection_tags and start again",
+                projectionName, stored, sizePath, size, projectionName));
+    }
+
+    /**
+     * The highest tag index among the stored offsets, -1 without offsets.
+     */
+    private static int highestTag(Connection connection, String table, String projectionName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT projection_key FROM " + table + " WHERE projection_name = ?")) {
+            statement.setString(1, projectionName);
+            int highest = -1;
+            try (ResultSet keys = statement.executeQuery()) {
+                while (keys.next()) {
+                    String key = keys.getString(1);
+                    highest = Math.max(highest, Integer.parseInt(key.substring(key.lastIndexOf('-') + 1)));
+                }
+            }
+            return highest;
+        }
+    }
+
+    private static OptionalInt recordedTags(Connection connection, String projectionName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT tags FROM projection_tags WHERE projection_name = ?")) {
+            statement.setString(1, projectionName);
+            try (ResultSet row = statement.executeQuery()) {
+                return row.next() ? OptionalInt.of(row.getInt(1)) : OptionalInt.empty();
+            }
+        }
+    }
+
+    /**
+     * Records the count unless another node just did, the count recorded first is the one checked.
+     */
+    private static void record(Connection connection, String projectionName, int tags) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO projection_tags (projection_name, tags) VALUES (?, ?) " +
+                        "ON CONFLICT (projection_name) DO NOTHING")) {
+            statement.setString(1, projectionName);
+            statement.setInt(2, tags);
+            statement.executeUpdate();
+        }
+        if (!connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+}
@@ -10,17 +10,19 @@ import com.querydsl.sql.types.JSR310InstantType;
 import com.querydsl.sql.types.JSR310LocalDateTimeType;
 import com.querydsl.sql.types.JSR310LocalDateType;
 import com.querydsl.sql.types.JSR310LocalTimeType;
-import com.zaxxer.hikari.HikariDataSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class QueryDSLJdbcSession implements JdbcSession {
-    private final HikariDataSource dataSource;
+    private final ReadSideDataSource dataSource;
     private final SQLQueryFactory queryFactory;
     private Connection connection;
+    private final List<Runnable> afterCommit = new ArrayList<>();
 
-    public QueryDSLJdbcSession(HikariDataSource dataSource) {
+    public QueryDSLJdbcSession(ReadSideDataSource dataSource) {
         this.dataSource = dataSource;
         Configuration configuration = this.querydslConfiguration(new PostgreSQLTemplates());
         this.queryFactory = new SQLQueryFactory(configuration, this::getConnection);
@@ -39,7 +41,7 @@ public class QueryDSLJdbcSession implements JdbcSession {
     @Override
     public <Result> Result withConnection(Function<Connection, Result> func) throws Exception {
         if (connection == null || connection.isClosed()) {
-            connection = dataSource.getConnection();
+            connection = dataSource.acquire();
             connection.setAutoCommit(false);
         }
         return func.apply(connection);
@@ -50,15 +52,27 @@ public class QueryDSLJdbcSession implements JdbcSession {
         if (connection != null && !connection.isClosed()) {
             connection.commit();
         }
+        for (Runnable callback : afterCommit) {
+            callback.run();
+        }
+        afterCommit.clear();
     }
 
     @Override
     public void rollback() throws SQLException {
+        afterCommit.clear();
         if (connection != null && !connection.isClosed()) {
             connection.rollback();
         }
     }
 
+    /**
+     * Runs the callback once the current transaction commits. It's dropped if the transaction rolls back.
+     */
+    public void onCommit(Runnable callback) {
+        afterCommit.add(callback);
+    }
+
     @Override
     public void close() throws SQLException {
         if (connection != null && !connection.isClosed()) {
@@ -73,7 +87,7 @@ public class QueryDSLJdbcSession implements JdbcSession {
     public Connection getConnection() {
         try {
             if (connection == null || connection.isClosed()) {
-                connection = dataSource.getConnection();
+                connection = dataSource.acquire();
             }
             return connection;
         } catch (SQLException e) {
@@ -5,7 +5,10 @@ import com.zaxxer.hikari.HikariDataSource;
 
 public class QueryDSLUtil {
 
-    public static HikariDataSource getDataSource(Config config) {
+    /**
+     * Builds a new pool. Use {@link ReadSideDataSource#get} instead, it owns the one pool of the ActorSystem.
+     */
+    static HikariDataSource getDataSource(Config config) {
         return buildDataSource(
                 config.getConfig("jdbc-connection-settings"));
     }
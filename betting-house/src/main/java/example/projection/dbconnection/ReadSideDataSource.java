@@ -0,0 +1,123 @@
+package example.projection.dbconnection;
+
+import akka.Done;
+import akka.actor.CoordinatedShutdown;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.persistence.jdbc.db.SlickExtension;
+import com.typesafe.config.Config;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import slick.jdbc.JdbcDataSource;
+import slick.jdbc.hikaricp.HikariCPJdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One read-side connection pool per ActorSystem. Every {@link QueryDSLJdbcSession} borrows
+ * its connection from here instead of building its own Hikari pool.
+ * <p>
+ * With {@code jdbc-connection-settings.connection-pool.share-with-persistence = on} the pool of the
+ * akka-persistence-jdbc shared database is reused, otherwise a dedicated pool is built from
+ * {@code jdbc-connection-settings} and closed from {@link CoordinatedShutdown}.
+ */
+public class ReadSideDataSource implements Extension {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadSideDataSource.class);
+
+    private final HikariDataSource dataSource;
+    private final boolean shared;
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Long::max, 0);
+
+    public static final ExtensionId<ReadSideDataSource> ID = new ExtensionId<>() {
+        @Override
+        public ReadSideDataSource createExtension(ActorSystem<?> system) {
+            return new ReadSideDataSource(system);
+        }
+    };
+
+    public static ReadSideDataSource get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private ReadSideDataSource(ActorSystem<?> system) {
+        Config config = system.settings().config();
+        Config poolConfig = config.getConfig("jdbc-connection-settings.connection-pool");
+
+        if (poolConfig.getBoolean("share-with-persistence")) {
+            this.dataSource = sharedWithPersistence(system, poolConfig.getString("persistence-plugin"));
+            this.shared = true;
+            log.info("read-side sessions borrow connections from the akka-persistence-jdbc pool [{}]",
+                    dataSource.getPoolName());
+        } else {
+            this.dataSource = QueryDSLUtil.getDataSource(config);
+            this.shared = false;
+            CoordinatedShutdown.get(system).addTask(
+                    CoordinatedShutdown.PhaseBeforeActorSystemTerminate(),
+                    "closing read-side connection pool",
+                    () -> {
+                        dataSource.close();
+                        return CompletableFuture.completedFuture(Done.done());
+                    });
+        }
+    }
+
+    private static HikariDataSource sharedWithPersistence(ActorSystem<?> system, String plugin) {
+        JdbcDataSource source = SlickExtension.get(system.classicSystem())
+                .database(system.settings().config().getConfig(plugin))
+                .database()
+                .source();
+        if (source instanceof HikariCPJdbcDataSource hikari) {
+            return hikari.ds();
+        }
+        throw new IllegalStateException(
+                "[" + plugin + "] is not backed by a Hikari pool and can't be shared with the read side");
+    }
+
+    /**
+     * Borrows a connection from the pool, recording how long the pool took to hand it over.
+     */
+    public Connection acquire() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = dataSource.getConnection();
+        long elapsed = System.nanoTime() - start;
+        acquireCount.increment();
+        acquireNanos.add(elapsed);
+        maxAcquireNanos.accumulate(elapsed);
+        return connection;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public PoolMetrics metrics() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        long count = acquireCount.sum();
+        long meanMicros = count == 0 ? 0 : acquireNanos.sum() / count / 1000;
+        if (pool == null) {
+            return new PoolMetrics(0, 0, 0, 0, count, meanMicros, maxAcquireNanos.get() / 1000);
+        }
+        return new PoolMetrics(
+                pool.getActiveConnections(),
+                pool.getIdleConnections(),
+                pool.getThreadsAwaitingConnection(),
+                pool.getTotalConnections(),
+                count,
+                meanMicros,
+                maxAcquireNanos.get() / 1000);
+    }
+
+    public record PoolMetrics(int active, int idle, int waiting, int total,
+                              long acquired, long meanAcquireMicros, long maxAcquireMicros) {
+    }
+}
@@ -0,0 +1,74 @@
+package example.projection.settlement;
+
+import akka.actor.typed.ActorSystem;
+import akka.persistence.jdbc.query.javadsl.JdbcReadJournal;
+import akka.persistence.query.Offset;
+import akka.projection.Projection;
+import akka.projection.ProjectionId;
+import akka.projection.eventsourced.EventEnvelope;
+import akka.projection.eventsourced.javadsl.EventSourcedProvider;
+import akka.projection.javadsl.SourceProvider;
+import akka.projection.jdbc.javadsl.JdbcProjection;
+import example.market.domain.Market;
+import example.projection.ProjectionWorkers;
+import example.projection.SliceProjections;
+import example.projection.TagLayout;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Projection of the market events that settles the bets of each market closed, see {@link SettlementPipeline}.
+ * The markets of a tag are settled one after the other, the tags in parallel.
+ */
+public class MarketSettlement {
+
+    public static void init(ActorSystem<?> system, SettlementRepository repository) {
+        SettlementPipeline pipeline = new SettlementPipeline(system, repository);
+
+        if (SliceProjections.enabled(system)) {
+            SliceProjections.init(
+                    system,
+                    "market-settlement",
+                    Market.typeKey.name(),
+                    Market.tags(system).length,
+                    system.settings().config().getInt("market-settlement.workers"),
+                    true,
+                    () -> new MarketSettlementHandler(pipeline));
+            return;
+        }
+
+        TagLayout.check(system, "MarketSettlement", List.of(Market.tags(system)), "sharding.market.tags.size");
+        ProjectionWorkers.get(system).init(
+                "market-settlement",
+                List.of(Market.tags(system)),
+                system.settings().config().getInt("market-settlement.workers"),
+                tag -> createProjection(system, pipeline, tag)
+        );
+    }
+
+    private static Projection<EventEnvelope<Market.Event>> createProjection(
+            ActorSystem<?> system,
+            SettlementPipeline pipeline,
+            String tag) {
+
+        SourceProvider<Offset, EventEnvelope<Market.Event>> sourceProvider =
+                EventSourcedProvider.eventsByTag(
+                        system,
+                        JdbcReadJournal.Identifier(),
+                        tag
+                );
+
+        return JdbcProjection.atLeastOnceAsync(
+                ProjectionId.of("MarketSettlement", tag),
+                sourceProvider,
+                () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system)),
+                () -> new MarketSettlementHandler(pipeline),
+                system
+        )
+                // a settled market isn't settled again after a restart, it would only answer RequestUnaccepted
+                .withSaveOffset(1, Duration.ZERO);
+    }
+}
@@ -0,0 +1,30 @@
+package example.projection.settlement;
+
+import akka.Done;
+import akka.projection.eventsourced.EventEnvelope;
+import akka.projection.javadsl.Handler;
+import example.market.domain.Market;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Settles the bets of a market when it closes. The offset of the {@link Market.Closed} is stored only once the
+ * whole market is settled, a failure restarts the projection and the settlement resumes from its last page.
+ */
+public class MarketSettlementHandler extends Handler<EventEnvelope<Market.Event>> {
+
+    private final SettlementPipeline pipeline;
+
+    public MarketSettlementHandler(SettlementPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public CompletionStage<Done> process(EventEnvelope<Market.Event> envelope) {
+        if (envelope.event() instanceof Market.Closed closed) {
+            return pipeline.settle(closed.marketId(), closed.result());
+        }
+        return CompletableFuture.completedFuture(Done.getInstance());
+    }
+}
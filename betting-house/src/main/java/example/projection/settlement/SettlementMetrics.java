@@ -0,0 +1,122 @@
+package example.projection.settlement;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of the market settlements running on this node and the outcome of the last ones finished.
+ */
+public class SettlementMetrics implements Extension {
+
+    private static final int MAX_FINISHED = 100;
+
+    public record MarketProgress(String marketId, long settled, long startedAtMillis, long elapsedMillis,
+                                 double betsPerSecond) {
+    }
+
+    public record Snapshot(long settledBets, long failedPages, long lateBets, List<MarketProgress> running,
+                           List<MarketProgress> finished) {
+    }
+
+    private record Running(long startedAtMillis, long startedAtNanos, long resumedFrom, LongAdder settled) {
+    }
+
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+    private final Deque<MarketProgress> finished = new ArrayDeque<>();
+    private final LongAdder settledBets = new LongAdder();
+    private final LongAdder failedPages = new LongAdder();
+    private final LongAdder lateBets = new LongAdder();
+
+    public static final ExtensionId<SettlementMetrics> ID = new ExtensionId<>() {
+        @Override
+        public SettlementMetrics createExtension(ActorSystem<?> system) {
+            return new SettlementMetrics();
+        }
+    };
+
+    public static SettlementMetrics get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private SettlementMetrics() {
+    }
+
+    /**
+     * @param progress where the settlement starts from, possibly resumed after a restart
+     */
+    void started(SettlementProgress progress) {
+        LongAdder settled = new LongAdder();
+        settled.add(progress.settled());
+        running.put(progress.marketId(), new Running(progress.startedAtMillis(), System.nanoTime(), progress.settled(), settled));
+    }
+
+    void settled(String marketId, int bets) {
+        settledBets.add(bets);
+        Running market = running.get(marketId);
+        if (market != null) {
+            market.settled().add(bets);
+        }
+    }
+
+    /**
+     * Bets found by a sweep, projected after the page they belong to was settled.
+     */
+    void lateBets(int bets) {
+        lateBets.add(bets);
+    }
+
+    void pageFailed() {
+        failedPages.increment();
+    }
+
+    void finished(SettlementProgress progress) {
+        Running market = running.remove(progress.marketId());
+        if (market == null) {
+            return;
+        }
+        synchronized (finished) {
+            finished.addFirst(toProgress(progress.marketId(), market, progress.finishedAtMillis() - progress.startedAtMillis()));
+            if (finished.size() > MAX_FINISHED) {
+                finished.removeLast();
+            }
+        }
+    }
+
+    /**
+     * A market that stopped without finishing, it's resumed when the projection restarts.
+     */
+    void stopped(String marketId) {
+        running.remove(marketId);
+    }
+
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        List<MarketProgress> current = running.entrySet().stream()
+                .map(entry -> toProgress(entry.getKey(), entry.getValue(), now - entry.getValue().startedAtMillis()))
+                .toList();
+        List<MarketProgress> done;
+        synchronized (finished) {
+            done = List.copyOf(finished);
+        }
+        return new Snapshot(settledBets.sum(), failedPages.sum(), lateBets.sum(), current, done);
+    }
+
+    /**
+     * The rate counts the bets settled since this node picked the market up, the elapsed time is since the
+     * market was closed.
+     */
+    private static MarketProgress toProgress(String marketId, Running market, long elapsedMillis) {
+        long settled = market.settled().sum();
+        double seconds = (System.nanoTime() - market.startedAtNanos()) / 1e9;
+        return new MarketProgress(marketId, settled, market.startedAtMillis(), elapsedMillis,
+                seconds > 0 ? (settled - market.resumedFrom()) / seconds : 0);
+    }
+}
@@ -0,0 +1,225 @@
+package example.projection.settlement;
+
+import akka.Done;
+import akka.NotUsed;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.japi.Pair;
+import akka.japi.function.Function;
+import akka.pattern.Patterns;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import example.market.domain.Bet;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Settles every bet of a closed market. The bets are read from bet_wallet_market in pages of
+ * {@code market-settlement.page-size} in betId order, and each page is settled with at most
+ * {@code market-settlement.parallelism} {@link Bet.Settle} in flight. The last betId of each page settled is stored
+ * in market_settlement, so a settlement that stops halfway resumes from the following page.
+ * <p>
+ * The bet projection fills bet_wallet_market asynchronously, a bet projected after its page was read would be left
+ * out. Once the pages are done the bets still open in bet_wallet_market are settled again, every
+ * {@code market-settlement.sweep-delay}, until a sweep finds none that wasn't settled yet or after
+ * {@code market-settlement.sweeps} of them. Only then is the settlement marked finished.
+ * <p>
+ * A bet that was already settled, or a winning one still reimbursing its wallet, answers
+ * {@link Bet.RequestUnaccepted}, which counts as done: a page replayed after a failure or a restart pays no winner
+ * twice.
+ */
+public class SettlementPipeline {
+
+    private final Logger logger = LoggerFactory.getLogger(SettlementPipeline.class);
+
+    private final ActorSystem<?> system;
+    private final ClusterSharding sharding;
+    private final SettlementRepository repository;
+    private final SettlementMetrics metrics;
+    private final Executor jdbcExecutor;
+    private final Duration startDelay;
+    private final int pageSize;
+    private final int parallelism;
+    private final Duration askTimeout;
+    private final Duration sweepDelay;
+    private final int sweeps;
+
+    public SettlementPipeline(ActorSystem<?> system, SettlementRepository repository) {
+        this.system = system;
+        this.sharding = ClusterSharding.get(system);
+        this.repository = repository;
+        this.metrics = SettlementMetrics.get(system);
+        this.jdbcExecutor = system.dispatchers().lookup(DispatcherSelector.fromConfig("akka.projection.jdbc.blocking-jdbc-dispatcher"));
+        Config config = system.settings().config().getConfig("market-settlement");
+        this.startDelay = config.getDuration("start-delay");
+        this.pageSize = config.getInt("page-size");
+        this.parallelism = config.getInt("parallelism");
+        this.askTimeout = config.getDuration("ask-timeout");
+        this.sweepDelay = config.getDuration("sweep-delay");
+        this.sweeps = config.getInt("sweeps");
+    }
+
+    /**
+     * Completes once every bet of the market is settled, or fails with the first page that couldn't be.
+     */
+    public CompletionStage<Done> settle(String marketId, int result) {
+        return Patterns.after(startDelay, system.classicSystem().scheduler(), system.executionContext(),
+                        () -> inTransaction(session -> start(marketId, result, session)))
+                .thenCompose(progress -> {
+                    if (progress.isFinished()) {
+                        return CompletableFuture.completedFuture(Done.getInstance());
+                    }
+                    metrics.started(progress);
+                    logger.info("settling market [{}] with result [{}] from bet [{}]",
+                            marketId, result, progress.lastBetId());
+                    return pages(progress)
+                            .runWith(Sink.last(), system)
+                            .thenCompose(last -> sweep(last, 1))
+                            .thenCompose(last -> inTransaction(session -> {
+                                SettlementProgress finished = last.finish(System.currentTimeMillis());
+                                repository.saveProgress(finished, session);
+                                return finished;
+                            }))
+                            .handle((finished, failure) -> {
+                                if (failure != null) {
+                                    metrics.stopped(marketId);
+                                    throw new IllegalStateException("settlement of market [" + marketId + "] stopped", failure);
+                                }
+                                metrics.finished(finished);
+                                logger.info("market [{}] settled, [{}] bets in [{}] ms",
+                                        marketId, finished.settled(), finished.finishedAtMillis() - finished.startedAtMillis());
+                                return Done.getInstance();
+                            });
+                });
+    }
+
+    private SettlementProgress start(String marketId, int result, QueryDSLJdbcSession session) throws Exception {
+        Optional<SettlementProgress> stored = repository.getProgress(marketId, session);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+        SettlementProgress progress = SettlementProgress.start(marketId, result, System.currentTimeMillis());
+        repository.saveProgress(progress, session);
+        return progress;
+    }
+
+    /**
+     * Emits the progress after each page settled, starting with the progress it resumes from.
+     */
+    private Source<SettlementProgress, NotUsed> pages(SettlementProgress from) {
+        return betIdPages(from.lastBetId(), (after, session) ->
+                repository.getBetIds(from.marketId(), after, pageSize, session))
+                .scanAsync(from, (progress, page) -> settlePage(progress, page));
+    }
+
+    /**
+     * Settles the bets still open in bet_wallet_market. The ones that take it were projected after their page was
+     * read, they're counted as settled and another sweep follows.
+     */
+    private CompletionStage<SettlementProgress> sweep(SettlementProgress progress, int round) {
+        return Patterns.after(sweepDelay, system.classicSystem().scheduler(), system.executionContext(),
+                        () -> betIdPages("", (after, session) ->
+                                repository.getOpenBetIds(progress.marketId(), after, pageSize, session))
+                                .mapConcat(page -> page)
+                                .mapAsyncUnordered(parallelism, betId -> settleBet(betId, progress.result()))
+                                .runWith(Sink.fold(0, (late, response) -> response instanceof Bet.Accepted ? late + 1 : late), system))
+                .thenCompose(late -> {
+                    if (late == 0) {
+                        return CompletableFuture.completedFuture(progress);
+                    }
+                    metrics.settled(progress.marketId(), late);
+                    metrics.lateBets(late);
+                    SettlementProgress next = progress.next(progress.lastBetId(), late);
+                    if (round >= sweeps) {
+                        logger.error("market [{}] still had [{}] bets projected after their page in sweep [{}], " +
+                                "finishing without another sweep", progress.marketId(), late, round);
+                        return CompletableFuture.completedFuture(next);
+                    }
+                    logger.warn("market [{}] had [{}] bets projected after their page, sweeping again",
+                            progress.marketId(), late);
+                    return sweep(next, round + 1);
+                });
+    }
+
+    private interface PageQuery {
+        List<String> fetch(String afterBetId, QueryDSLJdbcSession session) throws Exception;
+    }
+
+    /**
+     * Pages of betIds in betId order, from the one after {@code from}.
+     */
+    private Source<List<String>, NotUsed> betIdPages(String from, PageQuery query) {
+        return Source.unfoldAsync(Optional.of(from), after -> {
+            if (after.isEmpty()) {
+                return CompletableFuture.completedFuture(Optional.empty());
+            }
+            return inTransaction(session -> query.fetch(after.get(), session))
+                    .thenApply(page -> {
+                        if (page.isEmpty()) {
+                            return Optional.empty();
+                        }
+                        Optional<String> next = page.size() < pageSize
+                                ? Optional.empty()
+                                : Optional.of(page.get(page.size() - 1));
+                        return Optional.of(Pair.create(next, page));
+                    });
+        });
+    }
+
+    private CompletionStage<SettlementProgress> settlePage(SettlementProgress progress, List<String> betIds) {
+        return Source.from(betIds)
+                .mapAsyncUnordered(parallelism, betId -> settleBet(betId, progress.result()))
+                .runWith(Sink.ignore(), system)
+                .thenCompose(done -> inTransaction(session -> {
+                    SettlementProgress next = progress.next(betIds.get(betIds.size() - 1), betIds.size());
+                    repository.saveProgress(next, session);
+                    return next;
+                }))
+                .whenComplete((next, failure) -> {
+                    if (failure != null) {
+                        metrics.pageFailed();
+                    } else {
+                        metrics.settled(progress.marketId(), betIds.size());
+                    }
+                });
+    }
+
+    private CompletionStage<Bet.Response> settleBet(String betId, int result) {
+        return sharding.entityRefFor(Bet.typeKey, betId)
+                .ask(replyTo -> new Bet.Settle(result, replyTo), askTimeout);
+    }
+
+    /**
+     * Runs the work on the JDBC dispatcher in a session of its own and commits it.
+     */
+    private <T> CompletionStage<T> inTransaction(Function<QueryDSLJdbcSession, T> work) {
+        return CompletableFuture.supplyAsync(() -> {
+            QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+            try {
+                T result = work.apply(session);
+                session.commit();
+                return result;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                try {
+                    session.close();
+                } catch (Exception e) {
+                    logger.warn("failed to release the read-side connection", e);
+                }
+            }
+        }, jdbcExecutor);
+    }
+}
@@ -0,0 +1,27 @@
+package example.projection.settlement;
+
+/**
+ * A row of market_settlement. The bets of the market are settled in betId order, every bet up to
+ * {@code lastBetId} included is done.
+ *
+ * @param finishedAtMillis 0 while the settlement is in progress
+ */
+public record SettlementProgress(String marketId, int result, String lastBetId, long settled,
+                                 long startedAtMillis, long finishedAtMillis) {
+
+    public static SettlementProgress start(String marketId, int result, long nowMillis) {
+        return new SettlementProgress(marketId, result, "", 0, nowMillis, 0);
+    }
+
+    public boolean isFinished() {
+        return finishedAtMillis > 0;
+    }
+
+    public SettlementProgress next(String lastBetId, int settledInPage) {
+        return new SettlementProgress(marketId, result, lastBetId, settled + settledInPage, startedAtMillis, 0);
+    }
+
+    public SettlementProgress finish(long nowMillis) {
+        return new SettlementProgress(marketId, result, lastBetId, settled, startedAtMillis, nowMillis);
+    }
+}
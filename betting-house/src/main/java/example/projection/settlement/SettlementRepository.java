@@ -0,0 +1,24 @@
+package example.projection.settlement;
+
+import example.projection.dbconnection.QueryDSLJdbcSession;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SettlementRepository {
+
+    Optional<SettlementProgress> getProgress(String marketId, QueryDSLJdbcSession session) throws Exception;
+
+    void saveProgress(SettlementProgress progress, QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * The next {@code limit} bets of the market in bet_wallet_market with a betId after {@code afterBetId},
+     * in betId order.
+     */
+    List<String> getBetIds(String marketId, String afterBetId, int limit, QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * As {@link #getBetIds} for the bets still open in bet_wallet_market.
+     */
+    List<String> getOpenBetIds(String marketId, String afterBetId, int limit, QueryDSLJdbcSession session) throws Exception;
+}
@@ -0,0 +1,81 @@
+package example.projection.settlement;
+
+import com.querydsl.core.QueryFlag;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.to.db.BetRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static example.projection.settlement.QMarketSettlement.marketSettlement;
+import static example.projection.to.db.QBetWalletMarket.betWalletMarket;
+
+public class SettlementRepositoryImpl implements SettlementRepository {
+
+    @Override
+    public Optional<SettlementProgress> getProgress(String marketId, QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> Optional.ofNullable(session.getQueryFactory()
+                .select(marketSettlement.marketId,
+                        marketSettlement.result,
+                        marketSettlement.lastBetId,
+                        marketSettlement.settled,
+                        marketSettlement.startedAt,
+                        marketSettlement.finishedAt)
+                .from(marketSettlement)
+                .where(marketSettlement.marketId.eq(marketId))
+                .fetchFirst())
+                .map(row -> new SettlementProgress(
+                        row.get(marketSettlement.marketId),
+                        row.get(marketSettlement.result),
+                        row.get(marketSettlement.lastBetId),
+                        row.get(marketSettlement.settled),
+                        row.get(marketSettlement.startedAt),
+                        row.get(marketSettlement.finishedAt))));
+    }
+
+    @Override
+    public void saveProgress(SettlementProgress progress, QueryDSLJdbcSession session) throws Exception {
+        session.withConnection(connection -> session.getQueryFactory()
+                .insert(marketSettlement)
+                .set(marketSettlement.marketId, progress.marketId())
+                .set(marketSettlement.result, progress.result())
+                .set(marketSettlement.lastBetId, progress.lastBetId())
+                .set(marketSettlement.settled, progress.settled())
+                .set(marketSettlement.startedAt, progress.startedAtMillis())
+                .set(marketSettlement.finishedAt, progress.finishedAtMillis())
+                .addFlag(QueryFlag.Position.END, UPSERT)
+                .execute());
+    }
+
+    private static final String UPSERT = " on conflict (marketid) do update set" +
+            " lastbetid = excluded.lastbetid," +
+            " settled = excluded.settled," +
+            " finishedat = excluded.finishedat";
+
+    @Override
+    public List<String> getBetIds(String marketId, String afterBetId, int limit,
+                                  QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> session.getQueryFactory()
+                .select(betWalletMarket.betId)
+                .from(betWalletMarket)
+                .where(betWalletMarket.marketId.eq(marketId)
+                        .and(betWalletMarket.betId.gt(afterBetId)))
+                .orderBy(betWalletMarket.betId.asc())
+                .limit(limit)
+                .fetch());
+    }
+
+    @Override
+    public List<String> getOpenBetIds(String marketId, String afterBetId, int limit,
+                                      QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> session.getQueryFactory()
+                .select(betWalletMarket.betId)
+                .from(betWalletMarket)
+                .where(betWalletMarket.marketId.eq(marketId)
+                        .and(betWalletMarket.status.eq(BetRepository.OPEN))
+                        .and(betWalletMarket.betId.gt(afterBetId)))
+                .orderBy(betWalletMarket.betId.asc())
+                .limit(limit)
+                .fetch());
+    }
+}
@@ -0,0 +1,47 @@
+package example.projection.settlement;
+
+import akka.actor.ExtendedActorSystem;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.http.javadsl.server.Route;
+import akka.management.javadsl.ManagementRouteProvider;
+import akka.management.javadsl.ManagementRouteProviderSettings;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static akka.http.javadsl.server.Directives.*;
+
+/**
+ * Akka Management route with the settlements of this node: {@code GET /settlements}, one line per market
+ * running or finished lately with its bets settled, bets/sec and time since it closed.
+ */
+public class SettlementRoutes implements ManagementRouteProvider {
+
+    private final ActorSystem<?> system;
+
+    public SettlementRoutes(ExtendedActorSystem system) {
+        this.system = Adapter.toTyped(system);
+    }
+
+    @Override
+    public Route routes(ManagementRouteProviderSettings settings) {
+        return path("settlements", () ->
+                get(() -> complete(render(SettlementMetrics.get(system).snapshot())))
+        );
+    }
+
+    private static String render(SettlementMetrics.Snapshot snapshot) {
+        String header = String.format("settled bets [%d], failed pages [%d], bets found by a sweep [%d]%n",
+                snapshot.settledBets(), snapshot.failedPages(), snapshot.lateBets());
+        return header + Stream.concat(
+                        snapshot.running().stream().map(market -> line("running", market)),
+                        snapshot.finished().stream().map(market -> line("finished", market)))
+                .collect(Collectors.joining());
+    }
+
+    private static String line(String status, SettlementMetrics.MarketProgress market) {
+        return String.format("%s market [%s] settled [%d] bets/sec [%.1f] time-to-settle [%d ms]%n",
+                status, market.marketId(), market.settled(), market.betsPerSecond(), market.elapsedMillis());
+    }
+}
@@ -0,0 +1,112 @@
+package example.projection.to.db;
+
+import akka.NotUsed;
+import akka.actor.typed.ActorSystem;
+import akka.stream.ActorAttributes;
+import akka.stream.javadsl.Source;
+import com.mysema.commons.lang.CloseableIterator;
+import com.typesafe.config.Config;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+
+import java.util.Optional;
+
+/**
+ * Streams the bets of a market or a wallet out of bet_wallet_market in betId order, in keyset pages of
+ * {@code services.bet-projection.export.page-size} rows. Each page is read from a cursor
+ * {@code fetch-size} rows at a time and a row is only read when downstream asks for it, so the heap used
+ * doesn't depend on the number of bets exported.
+ * <p>
+ * A page keeps its connection and transaction until its last row is read, the next page takes a new one.
+ */
+public class BetExport {
+
+    private interface PageQuery {
+        CloseableIterator<BetView> page(String afterBetId, int limit, int fetchSize, QueryDSLJdbcSession session) throws Exception;
+    }
+
+    private final ActorSystem<?> system;
+    private final BetRepository repository;
+    private final int pageSize;
+    private final int fetchSize;
+
+    public BetExport(ActorSystem<?> system, BetRepository repository) {
+        this.system = system;
+        this.repository = repository;
+        Config config = system.settings().config().getConfig("services.bet-projection.export");
+        this.pageSize = config.getInt("page-size");
+        this.fetchSize = config.getInt("fetch-size");
+    }
+
+    public Source<BetView, NotUsed> byMarket(String marketId, String afterBetId) {
+        return rows(afterBetId, (after, limit, fetch, session) ->
+                repository.iterateBetsByMarket(marketId, after, limit, fetch, session));
+    }
+
+    public Source<BetView, NotUsed> byWallet(String walletId, String afterBetId) {
+        return rows(afterBetId, (after, limit, fetch, session) ->
+                repository.iterateBetsByWallet(walletId, after, limit, fetch, session));
+    }
+
+    private Source<BetView, NotUsed> rows(String afterBetId, PageQuery query) {
+        return Source.unfoldResource(
+                        () -> new Cursor(query, afterBetId),
+                        Cursor::next,
+                        Cursor::close)
+                .withAttributes(ActorAttributes.dispatcher("akka.projection.jdbc.blocking-jdbc-dispatcher"));
+    }
+
+    private final class Cursor {
+        private final PageQuery query;
+        private String afterBetId;
+        private QueryDSLJdbcSession session;
+        private CloseableIterator<BetView> page;
+        private int readInPage;
+
+        Cursor(PageQuery query, String afterBetId) {
+            this.query = query;
+            this.afterBetId = afterBetId;
+        }
+
+        Optional<BetView> next() throws Exception {
+            while (true) {
+                if (page == null) {
+                    session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+                    page = query.page(afterBetId, pageSize, fetchSize, session);
+                    readInPage = 0;
+                }
+                if (page.hasNext()) {
+                    BetView row = page.next();
+                    afterBetId = row.betId();
+                    readInPage++;
+                    return Optional.of(row);
+                }
+                // a page shorter than the page size is the last one
+                boolean lastPage = readInPage < pageSize;
+                closePage();
+                if (lastPage) {
+                    return Optional.empty();
+                }
+            }
+        }
+
+        void close() throws Exception {
+            if (page != null) {
+                closePage();
+            } else if (session != null) {
+                session.close();
+            }
+        }
+
+        private void closePage() throws Exception {
+            try {
+                page.close();
+                session.commit();
+            } finally {
+                page = null;
+                session.close();
+                session = null;
+            }
+        }
+    }
+}
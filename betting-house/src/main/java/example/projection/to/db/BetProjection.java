@@ -1,53 +1,88 @@
 package example.projection.to.db;
 
 import akka.actor.typed.ActorSystem;
-import akka.cluster.sharding.typed.ShardedDaemonProcessSettings;
-import akka.cluster.sharding.typed.javadsl.ShardedDaemonProcess;
 import akka.persistence.jdbc.query.javadsl.JdbcReadJournal;
 import akka.persistence.query.Offset;
-import akka.projection.ProjectionBehavior;
+import akka.projection.Projection;
 import akka.projection.ProjectionId;
 import akka.projection.eventsourced.EventEnvelope;
 import akka.projection.eventsourced.javadsl.EventSourcedProvider;
-import akka.projection.javadsl.ExactlyOnceProjection;
 import akka.projection.javadsl.SourceProvider;
 import akka.projection.jdbc.javadsl.JdbcProjection;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
 import example.market.domain.Bet;
+import example.projection.ProjectionWorkers;
+import example.projection.SliceProjections;
+import example.projection.TagLayout;
 import example.projection.dbconnection.QueryDSLJdbcSession;
-import example.projection.dbconnection.QueryDSLUtil;
-
-import java.util.Optional;
+import example.projection.dbconnection.ReadSideDataSource;
 
 public class BetProjection {
 
     public static void init(ActorSystem<?> system, BetRepository repository) {
-        ShardedDaemonProcess.get(system).init(ProjectionBehavior.Command.class,
+        if (SliceProjections.enabled(system)) {
+            SliceProjections.init(
+                    system,
+                    "bet-projection",
+                    Bet.typeKey.name(),
+                    Bet.tags(system).size(),
+                    system.settings().config().getInt("bet-projection.workers"),
+                    false,
+                    () -> SliceProjections.inJdbcTransaction(
+                            system, new BetProjectionHandler(repository, MarketStakeCache.get(system))));
+            return;
+        }
+        TagLayout.check(system, "BetProjection", Bet.tags(system), "sharding.bet.tags.size");
+        ProjectionWorkers.get(system).init(
                 "bet-projection",
-                Bet.tags.size(),
-                index -> ProjectionBehavior.create(createProjection(system, repository, index)),
-                ShardedDaemonProcessSettings.create(system),
-                Optional.of(ProjectionBehavior.stopMessage())
+                Bet.tags(system),
+                system.settings().config().getInt("bet-projection.workers"),
+                tag -> createProjection(system, repository, tag)
         );
     }
 
-    public static ExactlyOnceProjection<Offset, EventEnvelope<Bet.Event>> createProjection(
+    public static Projection<EventEnvelope<Bet.Event>> createProjection(
             ActorSystem<?> system,
             BetRepository repository,
-            int index) {
-
-        String tag = Bet.tags.get(index);
+            String tag) {
 
         SourceProvider<Offset, EventEnvelope<Bet.Event>> sourceProvider = EventSourcedProvider
                 .eventsByTag(system,
                         JdbcReadJournal.Identifier(),
                         tag);
 
+        Config grouped = groupedSettings(system.settings().config(), tag);
+        if (grouped.getBoolean("enabled")) {
+            return JdbcProjection.groupedWithin(
+                            ProjectionId.of("BetProjection", tag),
+                            sourceProvider,
+                            () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system)),
+                            () -> new BetProjectionGroupedHandler(repository, MarketStakeCache.get(system)),
+                            system)
+                    .withGroup(
+                            grouped.getInt("group-after-envelopes"),
+                            grouped.getDuration("group-after-duration"));
+        }
+
         return JdbcProjection.exactlyOnce(
                 ProjectionId.of("BetProjection", tag),
                 sourceProvider,
-                () -> new QueryDSLJdbcSession(QueryDSLUtil.getDataSource(system.settings().config())),
-                () -> new BetProjectionHandler(repository),
+                () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system)),
+                () -> new BetProjectionHandler(repository, MarketStakeCache.get(system)),
                 system
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * {@code bet-projection.grouped} with the overrides of {@code bet-projection.grouped.per-tag.<tag>} on top.
+     */
+    private static Config groupedSettings(Config config, String tag) {
+        Config grouped = config.getConfig("bet-projection.grouped");
+        String perTag = ConfigUtil.joinPath("per-tag", tag);
+        if (grouped.hasPath(perTag)) {
+            return grouped.getConfig(perTag).withFallback(grouped);
+        }
+        return grouped;
+    }
+}
@@ -0,0 +1,55 @@
+package example.projection.to.db;
+
+import akka.persistence.typed.PersistenceId;
+import akka.projection.eventsourced.EventEnvelope;
+import akka.projection.jdbc.javadsl.JdbcHandler;
+import example.market.domain.Bet;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BetProjectionGroupedHandler extends JdbcHandler<List<EventEnvelope<Bet.Event>>, QueryDSLJdbcSession> {
+
+    private final Logger logger = LoggerFactory.getLogger(BetProjectionGroupedHandler.class);
+    private final BetRepository repository;
+    private final MarketStakeCache cache;
+
+    public BetProjectionGroupedHandler(BetRepository repository, MarketStakeCache cache) {
+        this.repository = repository;
+        this.cache = cache;
+    }
+
+    @Override
+    public void process(QueryDSLJdbcSession session, List<EventEnvelope<Bet.Event>> envelopes) {
+        List<Bet.Opened> opened = new ArrayList<>(envelopes.size());
+        Map<String, String> statuses = new LinkedHashMap<>();
+        for (EventEnvelope<Bet.Event> envelope : envelopes) {
+            String status = BetProjectionHandler.terminalStatus(envelope.event());
+            if (envelope.event() instanceof Bet.Opened openedEvent) {
+                opened.add(openedEvent);
+            } else if (status != null) {
+                statuses.put(PersistenceId.extractEntityId(envelope.persistenceId()), status);
+            } else {
+                logger.debug("ignoring event {} in projection", envelope.event());
+            }
+        }
+
+        try {
+            repository.addBets(opened, session);
+            // after the inserts, a bet can be opened and closed within the same group
+            repository.updateStatuses(statuses, session);
+            Set<String> markets = new HashSet<>();
+            opened.forEach(bet -> markets.add(bet.marketId()));
+            session.onCommit(() -> cache.invalidate(markets));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package example.projection.to.db;
 
+import akka.persistence.typed.PersistenceId;
 import akka.projection.eventsourced.EventEnvelope;
 import akka.projection.jdbc.javadsl.JdbcHandler;
 import example.market.domain.Bet;
@@ -7,13 +8,18 @@ import example.projection.dbconnection.QueryDSLJdbcSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Map;
+import java.util.Set;
+
 public class BetProjectionHandler extends JdbcHandler<EventEnvelope<Bet.Event>, QueryDSLJdbcSession> {
 
     private final Logger logger = LoggerFactory.getLogger(BetProjectionHandler.class);
     private final BetRepository repository;
+    private final MarketStakeCache cache;
 
-    public BetProjectionHandler(BetRepository repository) {
+    public BetProjectionHandler(BetRepository repository, MarketStakeCache cache) {
         this.repository = repository;
+        this.cache = cache;
     }
 
     @Override
@@ -30,6 +36,15 @@ public class BetProjectionHandler extends JdbcHandler<EventEnvelope<Bet.Event>,
                         openedEvent.result(),
                         session
                 );
+                session.onCommit(() -> cache.invalidate(Set.of(openedEvent.marketId())));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        } else if (terminalStatus(event) != null) {
+            try {
+                repository.updateStatuses(
+                        Map.of(PersistenceId.extractEntityId(envelope.persistenceId()), terminalStatus(event)),
+                        session);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -37,4 +52,20 @@ public class BetProjectionHandler extends JdbcHandler<EventEnvelope<Bet.Event>,
             logger.debug("ignoring event {} in projection", event);
         }
     }
+
+    /**
+     * The status in bet_wallet_market of a bet after this event, or null if it leaves the bet open.
+     */
+    static String terminalStatus(Bet.Event event) {
+        if (event instanceof Bet.Closed) {
+            return "closed";
+        } else if (event instanceof Bet.Settled) {
+            return "settled";
+        } else if (event instanceof Bet.Cancelled) {
+            return "cancelled";
+        } else if (event instanceof Bet.Failed) {
+            return "failed";
+        }
+        return null;
+    }
 }
\ No newline at end of file
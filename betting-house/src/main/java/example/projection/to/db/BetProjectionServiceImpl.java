@@ -1,12 +1,15 @@
 package example.projection.to.db;
 
+import akka.NotUsed;
 import akka.actor.typed.ActorSystem;
 import akka.actor.typed.DispatcherSelector;
+import akka.stream.javadsl.Source;
 import betting.house.projection.proto.BetProjectionProto;
 import betting.house.projection.proto.BetProjectionService;
+import example.entry.RpcMetrics;
 import example.projection.dbconnection.QueryDSLJdbcSession;
-import example.projection.dbconnection.QueryDSLUtil;
-import scala.concurrent.ExecutionContext;
+import example.projection.dbconnection.ReadSideDataSource;
+import scala.concurrent.ExecutionContextExecutor;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -16,22 +19,32 @@ import java.util.stream.Collectors;
 
 public class BetProjectionServiceImpl implements BetProjectionService {
 
-    private final ExecutionContext jdbcExecutor;
+    private final ExecutionContextExecutor jdbcExecutor;
     private final BetRepository betRepository;
+    private final MarketStakeCache cache;
+    private final BetExport export;
+    private final RpcMetrics.Rpc getBetByMarketRpc;
+    private final RpcMetrics.Rpc betsByMarketRpc;
+    private final RpcMetrics.Rpc betsByWalletRpc;
     Supplier<QueryDSLJdbcSession> queryDSLJdbcSessionCreator;
 
     public BetProjectionServiceImpl(ActorSystem<?> system, BetRepository betRepository) {
         this.jdbcExecutor = system.dispatchers().lookup(DispatcherSelector.fromConfig("akka.projection.jdbc.blocking-jdbc-dispatcher"));
         this.betRepository = betRepository;
+        this.cache = MarketStakeCache.get(system);
+        this.export = new BetExport(system, betRepository);
+        RpcMetrics metrics = RpcMetrics.get(system);
+        this.getBetByMarketRpc = metrics.rpc("BetProjectionService", "GetBetByMarket");
+        this.betsByMarketRpc = metrics.rpc("BetProjectionService", "BetsByMarket");
+        this.betsByWalletRpc = metrics.rpc("BetProjectionService", "BetsByWallet");
 
-        queryDSLJdbcSessionCreator = () -> new QueryDSLJdbcSession(QueryDSLUtil.getDataSource(system.settings().config()));
+        queryDSLJdbcSessionCreator = () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system));
     }
 
     public CompletionStage<BetProjectionProto.SumStakes> getBetByMarket(BetProjectionProto.MarketIdsBet in) {
-        return CompletableFuture.supplyAsync(() -> {
+        return getBetByMarketRpc.time(() -> CompletableFuture.supplyAsync(() -> {
             try {
-                QueryDSLJdbcSession session = queryDSLJdbcSessionCreator.get();
-                List<BetProjectionProto.SumStake> sumStakes = betRepository.getBetPerMarketTotalStake(in.getMarketId(), session)
+                List<BetProjectionProto.SumStake> sumStakes = cache.getOrLoad(in.getMarketId(), () -> loadTotalStake(in.getMarketId()))
                         .stream()
                         .map(each -> BetProjectionProto.SumStake.newBuilder()
                                 .setTotal(each.getSum())
@@ -61,6 +74,37 @@ public class BetProjectionServiceImpl implements BetProjectionService {
 //            }
 
 //            return null;
-        });
+        }, jdbcExecutor));
+    }
+
+    public Source<BetProjectionProto.BetRow, NotUsed> betsByMarket(BetProjectionProto.BetsByMarketRequest in) {
+        return betsByMarketRpc.time(export.byMarket(in.getMarketId(), in.getAfterBetId())
+                .map(BetProjectionServiceImpl::toRow));
+    }
+
+    public Source<BetProjectionProto.BetRow, NotUsed> betsByWallet(BetProjectionProto.BetsByWalletRequest in) {
+        return betsByWalletRpc.time(export.byWallet(in.getWalletId(), in.getAfterBetId())
+                .map(BetProjectionServiceImpl::toRow));
+    }
+
+    private static BetProjectionProto.BetRow toRow(BetView bet) {
+        return BetProjectionProto.BetRow.newBuilder()
+                .setBetId(bet.betId())
+                .setWalletId(bet.walletId())
+                .setMarketId(bet.marketId())
+                .setOdds(bet.odds())
+                .setStake(bet.stake())
+                .setResult(bet.result())
+                .setStatus(bet.status())
+                .build();
+    }
+
+    private List<StakePerResult> loadTotalStake(String marketId) throws Exception {
+        QueryDSLJdbcSession session = queryDSLJdbcSessionCreator.get();
+        try {
+            return betRepository.getBetPerMarketTotalStake(marketId, session);
+        } finally {
+            session.close();
+        }
     }
 }
\ No newline at end of file
@@ -1,15 +1,54 @@
 package example.projection.to.db;
 
+import com.mysema.commons.lang.CloseableIterator;
+import example.market.domain.Bet;
 import example.projection.dbconnection.QueryDSLJdbcSession;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface BetRepository {
 
+    String OPEN = "open";
+
     void addBet(String betId, String walletId, String marketId, double odds,
                 int stake, int result, QueryDSLJdbcSession session) throws Exception;
 
+    /**
+     * Upserts all the bets with a single JDBC batch. A later bet in the list wins over an earlier one with the same id.
+     */
+    void addBets(List<Bet.Opened> bets, QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * Sets the status of each bet, see {@link BetView#status()}. Bets not in the table yet are left out.
+     */
+    void updateStatuses(Map<String, String> statusPerBet, QueryDSLJdbcSession session) throws Exception;
+
+    Optional<BetView> getBet(String betId, QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * At most {@code limit} bets of the market with a betId after {@code afterBetId}, in betId order. The rows are
+     * read from a cursor {@code fetchSize} at a time, the iterator has to be closed before the session is.
+     */
+    CloseableIterator<BetView> iterateBetsByMarket(String marketId, String afterBetId, int limit, int fetchSize,
+                                                   QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * As {@link #iterateBetsByMarket} for the bets of a wallet.
+     */
+    CloseableIterator<BetView> iterateBetsByWallet(String walletId, String afterBetId, int limit, int fetchSize,
+                                                   QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * Reads the totals kept in market_stake_per_result, one row per result of the market.
+     */
     List<StakePerResult> getBetPerMarketTotalStake(String marketId,
                                                    QueryDSLJdbcSession session) throws Exception;
+
+    /**
+     * Recomputes market_stake_per_result from bet_wallet_market. Returns the number of rows written.
+     */
+    long rebuildMarketStakePerResult(QueryDSLJdbcSession session) throws Exception;
 }
 
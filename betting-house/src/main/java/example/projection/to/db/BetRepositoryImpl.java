@@ -1,11 +1,27 @@
 package example.projection.to.db;
 
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.QueryFlag;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.Projections;
+import com.querydsl.sql.SQLExpressions;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+import example.market.domain.Bet;
 import example.projection.dbconnection.QueryDSLJdbcSession;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 import static example.projection.to.db.QBetWalletMarket.betWalletMarket;
+import static example.projection.to.db.QMarketStakePerResult.marketStakePerResult;
 
 public class BetRepositoryImpl implements BetRepository {
 
@@ -13,12 +29,20 @@ public class BetRepositoryImpl implements BetRepository {
     public void addBet(String betId, String walletId, String marketId, double odds,
                        int stake, int result, QueryDSLJdbcSession session) throws Exception {
         session.withConnection(connection -> {
-            String id = session.getQueryFactory().select(betWalletMarket.betId)
+            Tuple previous = session.getQueryFactory()
+                    .select(betWalletMarket.marketId, betWalletMarket.result, betWalletMarket.odds, betWalletMarket.stake)
                     .from(betWalletMarket)
                     .where(betWalletMarket.betId.eq(betId))
                     .fetchFirst();
 
-            if (id == null) {
+            Map<StakeKey, Double> deltas = new TreeMap<>();
+            if (previous != null) {
+                subtract(previous, deltas);
+            }
+            deltas.merge(new StakeKey(marketId, result), stakeOf(odds, stake), Double::sum);
+            applyStakeDeltas(deltas, session);
+
+            if (previous == null) {
                 return session.getQueryFactory()
                         .insert(betWalletMarket)
                         .set(betWalletMarket.betId, betId)
@@ -42,16 +66,195 @@ public class BetRepositoryImpl implements BetRepository {
         });
     }
 
+    @Override
+    public void addBets(List<Bet.Opened> bets, QueryDSLJdbcSession session) throws Exception {
+        if (bets.isEmpty()) {
+            return;
+        }
+        // the same row can't be upserted twice by one statement, the last event per bet wins
+        Map<String, Bet.Opened> latest = new LinkedHashMap<>();
+        for (Bet.Opened bet : bets) {
+            latest.put(bet.betId(), bet);
+        }
+
+        session.withConnection(connection -> {
+            Map<StakeKey, Double> deltas = new TreeMap<>();
+            session.getQueryFactory()
+                    .select(betWalletMarket.marketId, betWalletMarket.result, betWalletMarket.odds, betWalletMarket.stake)
+                    .from(betWalletMarket)
+                    .where(betWalletMarket.betId.in(latest.keySet()))
+                    .fetch()
+                    .forEach(previous -> subtract(previous, deltas));
+            for (Bet.Opened bet : latest.values()) {
+                deltas.merge(new StakeKey(bet.marketId(), bet.result()), stakeOf(bet.odds(), bet.stake()), Double::sum);
+            }
+            applyStakeDeltas(deltas, session);
+
+            SQLInsertClause insert = session.getQueryFactory()
+                    .insert(betWalletMarket)
+                    .addFlag(QueryFlag.Position.END, UPSERT);
+            for (Bet.Opened bet : latest.values()) {
+                insert.set(betWalletMarket.betId, bet.betId())
+                        .set(betWalletMarket.walletId, bet.walletId())
+                        .set(betWalletMarket.marketId, bet.marketId())
+                        .set(betWalletMarket.odds, bet.odds())
+                        .set(betWalletMarket.stake, bet.stake())
+                        .set(betWalletMarket.result, bet.result())
+                        .addBatch();
+            }
+            return insert.execute();
+        });
+    }
+
+    // (marketid, betid) is unique in both layouts of bet_wallet_market, a bet never changes market
+    private static final String UPSERT = " on conflict (marketid, betid) do update set" +
+            " walletid = excluded.walletid," +
+            " odds = excluded.odds," +
+            " stake = excluded.stake," +
+            " result = excluded.result";
+
+    private record StakeKey(String marketId, int result) implements Comparable<StakeKey> {
+
+        private static final Comparator<StakeKey> ORDER =
+                Comparator.comparing(StakeKey::marketId).thenComparingInt(StakeKey::result);
+
+        @Override
+        public int compareTo(StakeKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * The stake a bet adds to its market and result, as the rebuild of market_stake_per_result sums it.
+     */
+    private static double stakeOf(double odds, int stake) {
+        return odds * stake;
+    }
+
+    private static void subtract(Tuple previous, Map<StakeKey, Double> deltas) {
+        deltas.merge(
+                new StakeKey(previous.get(betWalletMarket.marketId), previous.get(betWalletMarket.result)),
+                -stakeOf(previous.get(betWalletMarket.odds), previous.get(betWalletMarket.stake)),
+                Double::sum);
+    }
+
+    /**
+     * The rows are upserted in (marketId, result) order, the deltas are a {@link TreeMap}: the bet projections of
+     * the other tags update the same rows, locking them in one order keeps their transactions from deadlocking.
+     */
+    private static void applyStakeDeltas(Map<StakeKey, Double> deltas, QueryDSLJdbcSession session) {
+        SQLInsertClause upsert = session.getQueryFactory()
+                .insert(marketStakePerResult)
+                .addFlag(QueryFlag.Position.END, STAKE_UPSERT);
+        for (Map.Entry<StakeKey, Double> delta : deltas.entrySet()) {
+            upsert.set(marketStakePerResult.marketId, delta.getKey().marketId())
+                    .set(marketStakePerResult.result, delta.getKey().result())
+                    .set(marketStakePerResult.total, delta.getValue())
+                    .addBatch();
+        }
+        upsert.execute();
+    }
+
+    private static final String STAKE_UPSERT = " on conflict (marketid, result) do update set" +
+            " total = market_stake_per_result.total + excluded.total";
+
+    @Override
+    public void updateStatuses(Map<String, String> statusPerBet, QueryDSLJdbcSession session) throws Exception {
+        if (statusPerBet.isEmpty()) {
+            return;
+        }
+        session.withConnection(connection -> {
+            SQLUpdateClause update = session.getQueryFactory().update(betWalletMarket);
+            for (Map.Entry<String, String> status : statusPerBet.entrySet()) {
+                update.set(betWalletMarket.status, status.getValue())
+                        .where(betWalletMarket.betId.eq(status.getKey()))
+                        .addBatch();
+            }
+            return update.execute();
+        });
+    }
+
+    @Override
+    public Optional<BetView> getBet(String betId, QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> Optional.ofNullable(session.getQueryFactory()
+                .select(Projections.constructor(BetView.class,
+                        betWalletMarket.betId,
+                        betWalletMarket.walletId,
+                        betWalletMarket.marketId,
+                        betWalletMarket.odds,
+                        betWalletMarket.stake,
+                        betWalletMarket.result,
+                        betWalletMarket.status))
+                .from(betWalletMarket)
+                .where(betWalletMarket.betId.eq(betId))
+                .fetchFirst()));
+    }
+
+    @Override
+    public CloseableIterator<BetView> iterateBetsByMarket(String marketId, String afterBetId, int limit, int fetchSize,
+                                                          QueryDSLJdbcSession session) throws Exception {
+        return iterateBets(betWalletMarket.marketId.eq(marketId), afterBetId, limit, fetchSize, session);
+    }
+
+    @Override
+    public CloseableIterator<BetView> iterateBetsByWallet(String walletId, String afterBetId, int limit, int fetchSize,
+                                                          QueryDSLJdbcSession session) throws Exception {
+        return iterateBets(betWalletMarket.walletId.eq(walletId), afterBetId, limit, fetchSize, session);
+    }
+
+    /**
+     * Keyset page over the (marketId, betId) or (walletId, betId) index. Postgres only streams the rows with a
+     * fetch size in a transaction, which the session always opens.
+     */
+    private CloseableIterator<BetView> iterateBets(Predicate owner, String afterBetId, int limit, int fetchSize,
+                                                   QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> {
+            SQLQuery<BetView> query = session.getQueryFactory()
+                    .select(Projections.constructor(BetView.class,
+                            betWalletMarket.betId,
+                            betWalletMarket.walletId,
+                            betWalletMarket.marketId,
+                            betWalletMarket.odds,
+                            betWalletMarket.stake,
+                            betWalletMarket.result,
+                            betWalletMarket.status))
+                    .from(betWalletMarket)
+                    .where(owner, betWalletMarket.betId.gt(afterBetId))
+                    .orderBy(betWalletMarket.betId.asc())
+                    .limit(limit);
+            query.setStatementOptions(StatementOptions.builder().setFetchSize(fetchSize).build());
+            return query.iterate();
+        });
+    }
+
     @Override
     public List<StakePerResult> getBetPerMarketTotalStake(String marketId,
                                                           QueryDSLJdbcSession session) throws Exception {
         return session.withConnection(connection -> session.getQueryFactory()
                 .select(Projections.bean(StakePerResult.class
-                        , (betWalletMarket.odds.multiply(betWalletMarket.stake)).sum().as("sum")
-                        , betWalletMarket.result))
-                .from(betWalletMarket)
-                .where(betWalletMarket.marketId.eq(marketId))
-                .groupBy(betWalletMarket.marketId, betWalletMarket.result)
+                        , marketStakePerResult.total.as("sum")
+                        , marketStakePerResult.result))
+                .from(marketStakePerResult)
+                .where(marketStakePerResult.marketId.eq(marketId))
                 .fetch());
     }
+
+    @Override
+    public long rebuildMarketStakePerResult(QueryDSLJdbcSession session) throws Exception {
+        return session.withConnection(connection -> {
+            session.getQueryFactory()
+                    .delete(marketStakePerResult)
+                    .execute();
+            return session.getQueryFactory()
+                    .insert(marketStakePerResult)
+                    .columns(marketStakePerResult.marketId, marketStakePerResult.result, marketStakePerResult.total)
+                    .select(SQLExpressions.select(
+                                    betWalletMarket.marketId,
+                                    betWalletMarket.result,
+                                    betWalletMarket.odds.multiply(betWalletMarket.stake).sum())
+                            .from(betWalletMarket)
+                            .groupBy(betWalletMarket.marketId, betWalletMarket.result))
+                    .execute();
+        });
+    }
 }
\ No newline at end of file
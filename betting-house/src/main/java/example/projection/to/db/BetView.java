@@ -0,0 +1,14 @@
+package example.projection.to.db;
+
+/**
+ * A row of bet_wallet_market.
+ *
+ * @param status "open", "closed", "settled", "cancelled" or "failed"
+ */
+public record BetView(String betId, String walletId, String marketId, double odds, int stake, int result,
+                      String status) {
+
+    public boolean isTerminal() {
+        return !BetRepository.OPEN.equals(status);
+    }
+}
@@ -0,0 +1,191 @@
+package example.projection.to.db;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Moves bet_wallet_market to the hash partitioned layout of optional/bet-projection-partitioned.sql while the bet projection
+ * keeps writing to it. Run the steps in order:
+ * <ol>
+ *     <li>{@code prepare}: the unique (marketId, betId) index the projection upserts on, to run before deploying a
+ *     version using it. Then the partitioned table, as bet_wallet_market_partitioned, and a trigger copying every
+ *     row written to bet_wallet_market into it from then on.</li>
+ *     <li>{@code copy [afterBetId]}: copies the rows in betId order, {@code bet-projection.partitioning.chunk-size}
+ *     per transaction. A row the trigger already copied is left as it is. The last betId of each chunk is logged,
+ *     an interrupted copy resumes after it.</li>
+ *     <li>{@code swap}: checks no row is missing, then swaps the tables under a short exclusive lock. The old table
+ *     is kept as bet_wallet_market_unpartitioned.</li>
+ * </ol>
+ * The partitioned table has the same columns, so {@link QBetWalletMarket} maps it before and after the swap.
+ */
+public class BetWalletMarketPartitioning {
+
+    private static final Logger log = LoggerFactory.getLogger(BetWalletMarketPartitioning.class);
+
+    static final String TABLE = "bet_wallet_market";
+    static final String PARTITIONED = "bet_wallet_market_partitioned";
+    static final String UNPARTITIONED = "bet_wallet_market_unpartitioned";
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            log.error("Usage: BetWalletMarketPartitioning prepare | copy [afterBetId] | swap");
+            return;
+        }
+        // local provider, so the command doesn't try to join the cluster
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "betting-house-partitioning",
+                ConfigFactory.parseString("akka.actor.provider = local").withFallback(ConfigFactory.load()));
+        Config config = system.settings().config().getConfig("bet-projection.partitioning");
+        QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+        try {
+            switch (args[0]) {
+                case "prepare" -> prepare(config.getInt("partitions"), session);
+                case "copy" -> copy(args.length > 1 ? args[1] : "", config.getInt("chunk-size"), session);
+                case "swap" -> swap(session);
+                default -> log.error("Unknown step [{}]", args[0]);
+            }
+        } catch (Exception ex) {
+            log.error("Partitioning step [{}] failed. Reason [{}]", args[0], ex.getMessage());
+            try {
+                session.rollback();
+            } catch (Exception ignored) {
+            }
+        } finally {
+            try {
+                session.close();
+            } catch (Exception ignored) {
+            }
+            system.terminate();
+        }
+    }
+
+    static void prepare(int partitions, QueryDSLJdbcSession session) throws Exception {
+        session.withConnection(connection -> {
+            // CONCURRENTLY can't run in a transaction. The index of bet-projection.sql, a no-op on a table created
+            // with it
+            connection.setAutoCommit(true);
+            execute(connection, "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS bet_wallet_market_market_bet_idx" +
+                    " ON public." + TABLE + "(marketId, betId)");
+            connection.setAutoCommit(false);
+
+            execute(connection, "CREATE TABLE IF NOT EXISTS public." + PARTITIONED + "(" +
+                    " betId VARCHAR(255) NOT NULL," +
+                    " walletId VARCHAR(255) NOT NULL," +
+                    " marketId VARCHAR(255) NOT NULL," +
+                    " odds DOUBLE PRECISION NOT NULL," +
+                    " stake INTEGER NOT NULL," +
+                    " result INTEGER NOT NULL," +
+                    " status VARCHAR(16) NOT NULL DEFAULT 'open'," +
+                    " PRIMARY KEY (marketId, betId))" +
+                    " PARTITION BY HASH (marketId)");
+            for (int i = 0; i < partitions; i++) {
+                execute(connection, String.format("CREATE TABLE IF NOT EXISTS public.%s_part_%d PARTITION OF public.%s" +
+                        " FOR VALUES WITH (MODULUS %d, REMAINDER %d)", TABLE, i, PARTITIONED, partitions, i));
+            }
+            execute(connection, "CREATE INDEX IF NOT EXISTS " + PARTITIONED + "_bet_idx ON public." + PARTITIONED + "(betId)");
+            execute(connection, "CREATE INDEX IF NOT EXISTS " + PARTITIONED + "_wallet_bet_idx ON public." + PARTITIONED + "(walletId, betId)");
+
+            execute(connection, "CREATE OR REPLACE FUNCTION public.bet_wallet_market_mirror() RETURNS trigger AS $$" +
+                    " BEGIN" +
+                    " INSERT INTO public." + PARTITIONED + " (betId, walletId, marketId, odds, stake, result, status)" +
+                    " VALUES (NEW.betId, NEW.walletId, NEW.marketId, NEW.odds, NEW.stake, NEW.result, NEW.status)" +
+                    " ON CONFLICT (marketId, betId) DO UPDATE SET" +
+                    " walletId = excluded.walletId, odds = excluded.odds, stake = excluded.stake," +
+                    " result = excluded.result, status = excluded.status;" +
+                    " RETURN NEW;" +
+                    " END $$ LANGUAGE plpgsql");
+            execute(connection, "DROP TRIGGER IF EXISTS bet_wallet_market_mirror ON public." + TABLE);
+            execute(connection, "CREATE TRIGGER bet_wallet_market_mirror AFTER INSERT OR UPDATE ON public." + TABLE +
+                    " FOR EACH ROW EXECUTE FUNCTION public.bet_wallet_market_mirror()");
+            return null;
+        });
+        session.commit();
+        log.info("[{}] created with [{}] partitions, rows written to [{}] are copied to it from now on",
+                PARTITIONED, partitions, TABLE);
+    }
+
+    /**
+     * Each chunk is one statement: rows already there were copied by the trigger, which saw a later version.
+     */
+    static void copy(String afterBetId, int chunkSize, QueryDSLJdbcSession session) throws Exception {
+        String sql = "WITH chunk AS (" +
+                " SELECT betId, walletId, marketId, odds, stake, result, status FROM public." + TABLE +
+                " WHERE betId > ? ORDER BY betId LIMIT ?)," +
+                " copied AS (INSERT INTO public." + PARTITIONED + " (betId, walletId, marketId, odds, stake, result, status)" +
+                " SELECT * FROM chunk ON CONFLICT (marketId, betId) DO NOTHING RETURNING 1)" +
+                " SELECT (SELECT count(*) FROM chunk), (SELECT max(betId) FROM chunk), (SELECT count(*) FROM copied)";
+        long started = System.nanoTime();
+        long read = 0;
+        long copied = 0;
+        String after = afterBetId;
+        while (true) {
+            String from = after;
+            long[] counts = new long[2];
+            String last = session.withConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    statement.setString(1, from);
+                    statement.setInt(2, chunkSize);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        rs.next();
+                        counts[0] = rs.getLong(1);
+                        counts[1] = rs.getLong(3);
+                        return rs.getString(2);
+                    }
+                }
+            });
+            session.commit();
+            if (counts[0] == 0) {
+                break;
+            }
+            read += counts[0];
+            copied += counts[1];
+            after = last;
+            log.info("copied up to betId [{}], [{}] rows read, [{}] copied", after, read, copied);
+        }
+        log.info("copy done in [{}] s, [{}] rows read, [{}] copied, the others were copied by the trigger",
+                (System.nanoTime() - started) / 1_000_000_000, read, copied);
+    }
+
+    static void swap(QueryDSLJdbcSession session) throws Exception {
+        long missing = session.withConnection(connection -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT count(*) FROM public." + TABLE + " o" +
+                         " WHERE NOT EXISTS (SELECT 1 FROM public." + PARTITIONED + " p" +
+                         " WHERE p.marketId = o.marketId AND p.betId = o.betId)")) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        });
+        session.commit();
+        if (missing > 0) {
+            throw new IllegalStateException("[" + missing + "] rows not copied yet, run copy first");
+        }
+
+        session.withConnection(connection -> {
+            // the projection waits for the lock, what it wrote until then is in through the trigger
+            execute(connection, "LOCK TABLE public." + TABLE + " IN ACCESS EXCLUSIVE MODE");
+            execute(connection, "DROP TRIGGER bet_wallet_market_mirror ON public." + TABLE);
+            execute(connection, "ALTER TABLE public." + TABLE + " RENAME TO " + UNPARTITIONED);
+            execute(connection, "ALTER TABLE public." + PARTITIONED + " RENAME TO " + TABLE);
+            return null;
+        });
+        session.commit();
+        log.info("[{}] is partitioned, the previous table is kept as [{}]", TABLE, UNPARTITIONED);
+    }
+
+    private static void execute(Connection connection, String sql) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package example.projection.to.db;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import com.typesafe.config.ConfigFactory;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Builds market_stake_per_result from the existing rows in bet_wallet_market.
+ * <p>
+ * Run it once, with the bet projection stopped, before deploying the version that reads the totals
+ * from market_stake_per_result, created on an existing database by optional/market-stake-per-result.sql.
+ * From then on the projection keeps the table up to date. The rebuild is rolled back when the bet projection
+ * stored an offset while it ran, the projection wasn't stopped and its writes may be counted twice or lost.
+ */
+public class MarketStakeBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketStakeBackfill.class);
+
+    public static void main(String[] args) {
+        // local provider, so the command doesn't try to join the cluster
+        ActorSystem<Void> system = ActorSystem.create(Behaviors.empty(), "betting-house-backfill",
+                ConfigFactory.parseString("akka.actor.provider = local").withFallback(ConfigFactory.load()));
+        QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(system));
+        try {
+            long startedAt = System.currentTimeMillis();
+            long rows = new BetRepositoryImpl().rebuildMarketStakePerResult(session);
+            long offsets = offsetsStoredSince(system, session, startedAt);
+            if (offsets > 0) {
+                session.rollback();
+                log.error("BetProjection stored [{}] offsets during the backfill of market_stake_per_result, " +
+                        "stop it and run the backfill again", offsets);
+                return;
+            }
+            session.commit();
+            log.info("market_stake_per_result rebuilt with [{}] rows", rows);
+        } catch (Exception ex) {
+            log.error("Backfill of market_stake_per_result failed. Reason [{}]", ex.getMessage());
+            try {
+                session.rollback();
+            } catch (Exception ignored) {
+            }
+        } finally {
+            try {
+                session.close();
+            } catch (Exception ignored) {
+            }
+            system.terminate();
+        }
+    }
+
+    /**
+     * The offsets of the tagged bet projections stored from the given time on, by a projection still running.
+     */
+    private static long offsetsStoredSince(ActorSystem<?> system, QueryDSLJdbcSession session, long since)
+            throws Exception {
+        String table = system.settings().config().getString("akka.projection.jdbc.offset-store.table");
+        return session.withConnection(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT count(*) FROM " + table + " WHERE projection_name = ? AND last_updated >= ?")) {
+                statement.setString(1, "BetProjection");
+                statement.setLong(2, since);
+                try (ResultSet count = statement.executeQuery()) {
+                    count.next();
+                    return count.getLong(1);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package example.projection.to.db;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.pubsub.PubSub;
+import akka.actor.typed.pubsub.Topic;
+import com.typesafe.config.Config;
+import example.market.domain.CborSerializable;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the stake totals per market served by {@link BetProjectionServiceImpl}.
+ * <p>
+ * Entries expire after {@code bet-projection.query-cache.time-to-live} and the least recently used are evicted
+ * beyond {@code max-entries}. The bet projection invalidates a market once the transaction writing one of its
+ * bets commits. The invalidation is applied locally right away and published to the other nodes through a
+ * cluster topic.
+ */
+public class MarketStakeCache implements Extension {
+
+    public record InvalidateMarkets(List<String> marketIds) implements CborSerializable {
+    }
+
+    public record CacheStats(long hits, long misses, long evictions, long invalidations, int size) {
+    }
+
+    private record Entry(List<StakePerResult> value, long expiresAt) {
+    }
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long timeToLiveNanos;
+    private final ActorRef<Topic.Command<InvalidateMarkets>> topic;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public static final ExtensionId<MarketStakeCache> ID = new ExtensionId<>() {
+        @Override
+        public MarketStakeCache createExtension(ActorSystem<?> system) {
+            return new MarketStakeCache(system);
+        }
+    };
+
+    public static MarketStakeCache get(ActorSystem<?> system) {
+        return ID.apply(system);
+    }
+
+    private MarketStakeCache(ActorSystem<?> system) {
+        Config config = system.settings().config().getConfig("bet-projection.query-cache");
+        this.enabled = config.getBoolean("enabled");
+        this.maxEntries = config.getInt("max-entries");
+        this.timeToLiveNanos = config.getDuration("time-to-live").toNanos();
+        this.topic = PubSub.get(system).topic(InvalidateMarkets.class, "market-stake-invalidations");
+        system.systemActorOf(subscriber(), "market-stake-cache-invalidations", Props.empty());
+    }
+
+    private Behavior<InvalidateMarkets> subscriber() {
+        return Behaviors.setup(context -> {
+            topic.tell(Topic.subscribe(context.getSelf()));
+            return Behaviors.receiveMessage(message -> {
+                invalidateLocally(message.marketIds());
+                return Behaviors.same();
+            });
+        });
+    }
+
+    /**
+     * Returns the cached totals of the market or loads them. A load racing with an invalidation of
+     * the same market is returned to its caller but not cached.
+     */
+    public List<StakePerResult> getOrLoad(String marketId, Callable<List<StakePerResult>> loader) throws Exception {
+        if (!enabled) {
+            return loader.call();
+        }
+
+        Entry loading = new Entry(null, 0);
+        synchronized (entries) {
+            Entry cached = entries.get(marketId);
+            if (cached != null && cached.value() != null) {
+                if (cached.expiresAt() - System.nanoTime() > 0) {
+                    hits.increment();
+                    return cached.value();
+                }
+                evictions.increment();
+            }
+            misses.increment();
+            entries.put(marketId, loading);
+        }
+
+        List<StakePerResult> value = loader.call();
+        synchronized (entries) {
+            if (entries.get(marketId) == loading) {
+                entries.put(marketId, new Entry(value, System.nanoTime() + timeToLiveNanos));
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(Collection<String> marketIds) {
+        if (!enabled || marketIds.isEmpty()) {
+            return;
+        }
+        invalidateLocally(marketIds);
+        topic.tell(Topic.publish(new InvalidateMarkets(List.copyOf(marketIds))));
+    }
+
+    private void invalidateLocally(Collection<String> marketIds) {
+        synchronized (entries) {
+            for (String marketId : marketIds) {
+                if (entries.remove(marketId) != null) {
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        synchronized (entries) {
+            return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), entries.size());
+        }
+    }
+}
@@ -30,6 +30,7 @@ public class QBetWalletMarket extends com.querydsl.sql.RelationalPathBase<QBetWa
     public final NumberPath<Double> odds = createNumber("odds", Double.class);
     public final NumberPath<Integer> stake = createNumber("stake", Integer.class);
     public final NumberPath<Integer> result = createNumber("result", Integer.class);
+    public final StringPath status = createString("status");
 
     public final com.querydsl.sql.PrimaryKey<QBetWalletMarket> questionPkey = createPrimaryKey(betId);
 
@@ -66,6 +67,7 @@ public class QBetWalletMarket extends com.querydsl.sql.RelationalPathBase<QBetWa
         addMetadata(odds, ColumnMetadata.named("odds").withIndex(4).ofType(Types.DOUBLE).withSize(2147483647));
         addMetadata(stake, ColumnMetadata.named("stake").withIndex(5).ofType(Types.INTEGER).withSize(2147483647));
         addMetadata(result, ColumnMetadata.named("result").withIndex(6).ofType(Types.INTEGER).withSize(2147483647));
+        addMetadata(status, ColumnMetadata.named("status").withIndex(7).ofType(Types.VARCHAR).withSize(16));
     }
 
 }
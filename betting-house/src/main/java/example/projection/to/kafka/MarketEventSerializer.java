@@ -0,0 +1,45 @@
+package example.projection.to.kafka;
+
+import com.google.protobuf.Any;
+import com.google.protobuf.Empty;
+import com.google.protobuf.GeneratedMessageV3;
+import example.market.domain.Market;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns market events into the protobuf payload published to Kafka.
+ */
+class MarketEventSerializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketEventSerializer.class);
+
+    static byte[] serialize(Market.Event event) {
+        try {
+            GeneratedMessageV3 proto;
+            switch (event) {
+                case Market.Closed closed -> proto = betting.house.projection.proto.Market.MarketClosed.newBuilder()
+                        .setMarketId(closed.marketId())
+                        .setResult(closed.result())
+                        .build();
+                case Market.Opened opened -> proto = betting.house.projection.proto.Market.MarketOpened.newBuilder()
+                        .setMarketId(opened.marketId())
+                        .build();
+                case Market.Cancelled(String marketId, String reason) ->
+                        proto = betting.house.projection.proto.Market.MarketCancelled.newBuilder()
+                                .setMarketId(marketId)
+                                .setReason(reason)
+                                .build();
+                case null, default -> {
+                    log.info("ignoring event {} in projection", event);
+                    proto = Empty.getDefaultInstance();
+                }
+            }
+
+            return Any.pack(proto, "market-projection").toByteArray();
+        } catch (Exception e) {
+            log.error("Serialization error", e);
+            return new byte[0];
+        }
+    }
+}
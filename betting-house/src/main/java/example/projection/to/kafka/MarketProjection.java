@@ -2,11 +2,8 @@ package example.projection.to.kafka;
 
 import akka.actor.CoordinatedShutdown;
 import akka.actor.typed.ActorSystem;
-import akka.cluster.sharding.typed.javadsl.ShardedDaemonProcess;
-import akka.cluster.sharding.typed.ShardedDaemonProcessSettings;
-import akka.projection.ProjectionBehavior;
+import akka.projection.Projection;
 import akka.projection.ProjectionId;
-import akka.projection.javadsl.AtLeastOnceProjection;
 import akka.projection.javadsl.SourceProvider;
 import akka.projection.eventsourced.EventEnvelope;
 import akka.projection.eventsourced.javadsl.EventSourcedProvider;
@@ -15,13 +12,17 @@ import akka.persistence.query.Offset;
 import akka.persistence.jdbc.query.javadsl.JdbcReadJournal;
 import akka.kafka.ProducerSettings;
 import akka.kafka.javadsl.SendProducer;
+import com.typesafe.config.Config;
 import example.market.domain.Market;
+import example.projection.ProjectionWorkers;
+import example.projection.SliceProjections;
+import example.projection.TagLayout;
 import example.projection.dbconnection.QueryDSLJdbcSession;
-import example.projection.dbconnection.QueryDSLUtil;
+import example.projection.dbconnection.ReadSideDataSource;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
-import java.util.Optional;
+import java.util.List;
 
 public class MarketProjection {
 
@@ -30,15 +31,23 @@ public class MarketProjection {
         String topic = system.settings().config()
                 .getString("kafka.market-projection.topic");
 
-        ShardedDaemonProcess.get(system).init(
-                ProjectionBehavior.Command.class,
+        if (SliceProjections.enabled(system)) {
+            SliceProjections.init(
+                    system,
+                    "MarketProjection",
+                    Market.typeKey.name(),
+                    Market.tags(system).length,
+                    system.settings().config().getInt("market-projection.workers"),
+                    false,
+                    () -> new MarketProjectionHandler(system, topic, producer));
+            return;
+        }
+        TagLayout.check(system, "MarketProjection", List.of(Market.tags(system)), "sharding.market.tags.size");
+        ProjectionWorkers.get(system).init(
                 "MarketProjection",
-                Market.tags.length,
-                index -> ProjectionBehavior.create(
-                        createProjection(system, topic, producer, index)
-                ),
-                ShardedDaemonProcessSettings.create(system),
-                Optional.of(ProjectionBehavior.stopMessage())
+                List.of(Market.tags(system)),
+                system.settings().config().getInt("market-projection.workers"),
+                tag -> createProjection(system, topic, producer, tag)
         );
     }
 
@@ -48,6 +57,9 @@ public class MarketProjection {
                 new StringSerializer(),
                 new ByteArraySerializer()
         );
+        if (system.settings().config().getBoolean("market-projection.stand-in-producer")) {
+            producerSettings = producerSettings.withProducer(new StandInProducer());
+        }
 
         SendProducer<String, byte[]> sendProducer = new SendProducer<>(producerSettings, system);
 
@@ -60,13 +72,12 @@ public class MarketProjection {
         return sendProducer;
     }
 
-    private static AtLeastOnceProjection<Offset, EventEnvelope<Market.Event>> createProjection(
+    private static Projection<EventEnvelope<Market.Event>> createProjection(
             ActorSystem<?> system,
             String topic,
             SendProducer<String, byte[]> producer,
-            int index
+            String tag
     ) {
-        String tag = Market.tags[index];
 
         SourceProvider<Offset, EventEnvelope<Market.Event>> sourceProvider =
                 EventSourcedProvider.eventsByTag(
@@ -75,10 +86,23 @@ public class MarketProjection {
                         tag
                 );
 
+        Config grouped = system.settings().config().getConfig("market-projection.grouped");
+        if (grouped.getBoolean("enabled")) {
+            return JdbcProjection.groupedWithinAsync(
+                            ProjectionId.of("MarketProjection", tag),
+                            sourceProvider,
+                            () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system)),
+                            () -> new MarketProjectionGroupedHandler(system, topic, producer),
+                            system)
+                    .withGroup(
+                            grouped.getInt("group-after-envelopes"),
+                            grouped.getDuration("group-after-duration"));
+        }
+
         return JdbcProjection.atLeastOnceAsync(
                 ProjectionId.of("MarketProjection", tag),
                 sourceProvider,
-                () -> new QueryDSLJdbcSession(QueryDSLUtil.getDataSource(system.settings().config())),
+                () -> new QueryDSLJdbcSession(ReadSideDataSource.get(system)),
                 () -> new MarketProjectionHandler(system, topic, producer),
                 system
         );
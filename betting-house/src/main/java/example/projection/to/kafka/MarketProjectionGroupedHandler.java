@@ -0,0 +1,60 @@
+package example.projection.to.kafka;
+
+import akka.Done;
+import akka.actor.typed.ActorSystem;
+import akka.kafka.ProducerMessage;
+import akka.kafka.javadsl.SendProducer;
+import akka.projection.eventsourced.EventEnvelope;
+import akka.projection.javadsl.Handler;
+import example.market.domain.Market;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Publishes a whole group of market events at once. The offset of the group is stored once all of them are acked,
+ * so the producer can batch and compress them instead of waiting for one ack per event.
+ */
+public class MarketProjectionGroupedHandler extends Handler<List<EventEnvelope<Market.Event>>> {
+
+    private final Logger log = LoggerFactory.getLogger(MarketProjectionGroupedHandler.class);
+    private final ActorSystem<?> system;
+    private final String topic;
+    private final SendProducer<String, byte[]> producer;
+
+    public MarketProjectionGroupedHandler(
+            ActorSystem<?> system,
+            String topic,
+            SendProducer<String, byte[]> producer) {
+        this.system = system;
+        this.topic = topic;
+        this.producer = producer;
+    }
+
+    @Override
+    public CompletionStage<Done> process(List<EventEnvelope<Market.Event>> envelopes) {
+        List<ProducerRecord<String, byte[]>> records = new ArrayList<>(envelopes.size());
+        for (EventEnvelope<Market.Event> envelope : envelopes) {
+            Market.Event event = envelope.event();
+            byte[] serializedEvent = MarketEventSerializer.serialize(event);
+            if (serializedEvent.length > 0) {
+                records.add(new ProducerRecord<>(topic, event.marketId(), serializedEvent));
+            }
+        }
+
+        if (records.isEmpty()) {
+            return CompletableFuture.completedFuture(Done.done());
+        }
+
+        return producer.sendEnvelope(ProducerMessage.multi(records))
+                .thenApplyAsync(results -> {
+                    log.debug("published [{}] events to topic [{}]", records.size(), topic);
+                    return Done.done();
+                }, system.executionContext());
+    }
+}
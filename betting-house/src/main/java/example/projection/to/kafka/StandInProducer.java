@@ -0,0 +1,50 @@
+package example.projection.to.kafka;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Producer used instead of Kafka when {@code market-projection.stand-in-producer} is on. Every record is acked
+ * as soon as it's sent and then dropped, so it can run under load without keeping the history a
+ * {@link MockProducer} keeps.
+ */
+public class StandInProducer extends MockProducer<String, byte[]> {
+
+    public StandInProducer() {
+        super(true, new FirstPartition(), new StringSerializer(), new ByteArraySerializer());
+    }
+
+    @Override
+    public synchronized Future<RecordMetadata> send(ProducerRecord<String, byte[]> record, Callback callback) {
+        Future<RecordMetadata> metadata = super.send(record, callback);
+        clear();
+        return metadata;
+    }
+
+    /**
+     * There is no cluster metadata to pick a partition from.
+     */
+    private static class FirstPartition implements Partitioner {
+        @Override
+        public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs) {
+        }
+    }
+}
@@ -9,6 +9,7 @@ import akka.http.javadsl.model.HttpResponse;
 import akka.japi.function.Function;
 import example.bet.grpc.BetServiceHandlerFactory;
 import example.entry.BetServiceImplSharding;
+import example.projection.to.db.BetRepository;
 import scala.concurrent.ExecutionContext;
 
 import java.util.concurrent.CompletionStage;
@@ -18,9 +19,10 @@ public class BetServiceServer {
     public static CompletionStage<ServerBinding> init(
             ActorSystem<?> system,
             ClusterSharding sharding,
-            ExecutionContext ec) {
+            ExecutionContext ec,
+            BetRepository repository) {
         Function<HttpRequest, CompletionStage<HttpResponse>> betService =
-                BetServiceHandlerFactory.createWithServerReflection(new BetServiceImplSharding(sharding, ec), system);
+                BetServiceHandlerFactory.createWithServerReflection(new BetServiceImplSharding(system, sharding, ec, repository), system);
 
 
         int port = system.settings().config().getInt("services.bet.port");
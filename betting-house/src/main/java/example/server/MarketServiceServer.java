@@ -18,7 +18,7 @@ public class MarketServiceServer {
             akka.cluster.sharding.typed.javadsl.ClusterSharding sharding,
             ExecutionContext ec) {
         Function<akka.http.javadsl.model.HttpRequest, CompletionStage<akka.http.javadsl.model.HttpResponse>> marketService =
-                MarketServiceHandlerFactory.createWithServerReflection(new MarketServiceImplSharding(sharding, ec), system);
+                MarketServiceHandlerFactory.createWithServerReflection(new MarketServiceImplSharding(system, sharding, ec), system);
 
 
         int port = system.settings().config().getInt("services.market.port");
@@ -21,6 +21,6 @@ public class WalletServiceServer {
 
         return Http.get(system.classicSystem())
                 .newServerAt(host, port)
-                .bind(new WalletService(sharding).route());
+                .bind(new WalletService(sharding, system).route());
     }
 }
\ No newline at end of file
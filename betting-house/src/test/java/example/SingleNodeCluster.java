@@ -0,0 +1,44 @@
+package example;
+
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorSystem;
+import akka.cluster.MemberStatus;
+import akka.cluster.typed.Cluster;
+import akka.cluster.typed.Join;
+import akka.persistence.testkit.PersistenceTestKitPlugin;
+import akka.persistence.testkit.PersistenceTestKitSnapshotPlugin;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The test systems: a betting-house node writing to the in-memory journal and snapshot store of
+ * akka-persistence-testkit, see {@code test.conf}, that joins itself when sharding or distributed data is needed.
+ */
+public final class SingleNodeCluster {
+
+    private SingleNodeCluster() {
+    }
+
+    /**
+     * @param overrides settings taking precedence over {@code test.conf}
+     */
+    public static Config config(String overrides) {
+        return ConfigFactory.parseString(overrides)
+                .withFallback(PersistenceTestKitPlugin.getInstance().config())
+                .withFallback(PersistenceTestKitSnapshotPlugin.config())
+                .withFallback(ConfigFactory.load("test"));
+    }
+
+    public static void join(ActorSystem<?> system) {
+        Cluster cluster = Cluster.get(system);
+        cluster.manager().tell(Join.create(cluster.selfMember().address()));
+        TestProbe.create(system).awaitAssert(Duration.ofSeconds(20), () -> {
+            assertEquals(MemberStatus.up(), cluster.selfMember().status());
+            return null;
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package example.entry;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
+import example.SingleNodeCluster;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControlTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource(SingleNodeCluster.config(
+            "admission-control {\n" +
+                    "  initial-limit = 4\n" +
+                    "  min-limit = 2\n" +
+                    "  max-limit = 6\n" +
+                    "  latency-threshold = 200ms\n" +
+                    "  backoff-ratio = 0.5\n" +
+                    "}"));
+
+    private static final long AFTER_THRESHOLD_MILLIS = 300;
+
+    private final AdmissionControl admission = AdmissionControl.get(testKit.system());
+
+    /**
+     * A limiter per entity type, each test has its own.
+     */
+    private static EntityTypeKey<String> entityType(String name) {
+        return EntityTypeKey.create(String.class, name);
+    }
+
+    private AdmissionControl.Stats stats(EntityTypeKey<?> typeKey) {
+        for (AdmissionControl.Stats stats : admission.stats()) {
+            if (stats.entityType().equals(typeKey.name())) {
+                return stats;
+            }
+        }
+        throw new AssertionError("no limiter for [" + typeKey.name() + "]");
+    }
+
+    private List<CompletableFuture<String>> admitPending(EntityTypeKey<?> typeKey, int asks) {
+        List<CompletableFuture<String>> pending = new ArrayList<>(asks);
+        for (int i = 0; i < asks; i++) {
+            CompletableFuture<String> ask = new CompletableFuture<>();
+            admission.admit(typeKey, () -> ask);
+            pending.add(ask);
+        }
+        return pending;
+    }
+
+    private static Throwable failureOf(CompletionStage<?> stage) {
+        return stage.toCompletableFuture().handle((response, failure) -> failure).join();
+    }
+
+    @Test
+    public void turnsDownTheAsksOverTheLimitWithoutRunningThem() {
+        EntityTypeKey<String> typeKey = entityType("over-limit");
+        List<CompletableFuture<String>> pending = admitPending(typeKey, 4);
+        boolean[] ran = {false};
+
+        Throwable failure = failureOf(admission.admit(typeKey, () -> {
+            ran[0] = true;
+            return CompletableFuture.completedFuture("answered");
+        }));
+
+        assertTrue(AdmissionControl.isRejection(failure));
+        assertFalse(ran[0]);
+        assertEquals(new AdmissionControl.Stats("over-limit", 4, 4, 1), stats(typeKey));
+
+        pending.forEach(ask -> ask.complete("answered"));
+        assertEquals(0, stats(typeKey).inFlight());
+    }
+
+    @Test
+    public void growsTheLimitUpToTheMaxWhileTheAsksAreFastAndItIsInUse() {
+        EntityTypeKey<String> typeKey = entityType("growth");
+        admitPending(typeKey, 1).forEach(ask -> ask.complete("answered"));
+
+        // each round fills the limit then answers all the asks, the ones answered while half of it is in use grow it
+        for (int round = 0; round < 10; round++) {
+            admitPending(typeKey, stats(typeKey).limit()).forEach(ask -> ask.complete("answered"));
+        }
+
+        assertEquals(6, stats(typeKey).limit());
+    }
+
+    @Test
+    public void backsOffOncePerLatencyThresholdOnTimeoutsDownToTheMin() throws InterruptedException {
+        EntityTypeKey<String> typeKey = entityType("backoff");
+        admitPending(typeKey, 1).forEach(ask -> ask.complete("answered"));
+        Thread.sleep(AFTER_THRESHOLD_MILLIS);
+
+        // a wave of timeouts counts once
+        admitPending(typeKey, 2).forEach(ask -> ask.completeExceptionally(new TimeoutException()));
+        assertEquals(2, stats(typeKey).limit());
+
+        Thread.sleep(AFTER_THRESHOLD_MILLIS);
+        admitPending(typeKey, 1).forEach(ask -> ask.completeExceptionally(new TimeoutException()));
+        assertEquals(2, stats(typeKey).limit());
+    }
+}
@@ -0,0 +1,116 @@
+package example.market.domain;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.cluster.sharding.typed.javadsl.Entity;
+import akka.persistence.testkit.javadsl.EventSourcedBehaviorTestKit;
+import example.SingleNodeCluster;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BetTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource(SingleNodeCluster.config(""));
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static ClusterSharding sharding;
+
+    @BeforeClass
+    public static void startMarketsAndWallets() {
+        SingleNodeCluster.join(testKit.system());
+        sharding = ClusterSharding.get(testKit.system());
+        sharding.init(Entity.of(Market.typeKey, entityContext -> Market.create(entityContext.getEntityId())));
+        sharding.init(Entity.of(Wallet.typeKey, entityContext -> Wallet.create(entityContext.getEntityId())));
+    }
+
+    private static int balance(String walletId) {
+        Wallet.Response response = sharding.entityRefFor(Wallet.typeKey, walletId)
+                .<Wallet.Response>ask(Wallet.CheckFunds::new, TIMEOUT)
+                .toCompletableFuture()
+                .join();
+        return ((Wallet.CurrentBalance) response).amount();
+    }
+
+    private static void fund(String walletId, int amount) {
+        sharding.entityRefFor(Wallet.typeKey, walletId)
+                .<Wallet.UpdatedResponse>ask(replyTo -> new Wallet.AddFunds(amount, replyTo), TIMEOUT)
+                .toCompletableFuture()
+                .join();
+    }
+
+    private static void openMarket(String marketId) {
+        sharding.entityRefFor(Market.typeKey, marketId)
+                .<Market.Response>ask(replyTo -> new Market.Open(
+                        new Market.Fixture(marketId + "-fixture", "home", "away"),
+                        new Market.Odds(1.8, 2.4, 3.1),
+                        OffsetDateTime.now(ZoneOffset.UTC),
+                        replyTo), TIMEOUT)
+                .toCompletableFuture()
+                .join();
+    }
+
+    @Test
+    public void validatesABetRecoveredBeforeItsValidations() {
+        fund("recovered-wallet", 100);
+        openMarket("recovered-market");
+        TestProbe<ClusterSharding.ShardCommand> shard = testKit.createTestProbe();
+        EventSourcedBehaviorTestKit<Bet.Command, Bet.Event, Bet.State> bet =
+                EventSourcedBehaviorTestKit.create(testKit.system(), Bet.create("recovered", shard.ref()));
+
+        // opened before a restart, the requests and their replies lost with the previous incarnation
+        bet.initialize(new Bet.Opened("recovered", "recovered-wallet", "recovered-market", 1.8, 10, 1));
+
+        shard.awaitAssert(() -> {
+            assertTrue(bet.getState() instanceof Bet.OpenState open
+                    && open.marketConfirmed().orElse(false)
+                    && open.fundsConfirmed().orElse(false));
+            return null;
+        });
+        assertEquals(90, balance("recovered-wallet"));
+    }
+
+    @Test
+    public void reimbursesAWinningBetOnceWhenItsSettleIsSentAgain() {
+        fund("winner-wallet", 100);
+        openMarket("winner-market");
+        TestProbe<ClusterSharding.ShardCommand> shard = testKit.createTestProbe();
+        EventSourcedBehaviorTestKit<Bet.Command, Bet.Event, Bet.State> bet =
+                EventSourcedBehaviorTestKit.create(testKit.system(), Bet.create("winner", shard.ref()));
+
+        assertTrue(bet.runCommand(replyTo -> new Bet.Open("winner-wallet", "winner-market", 1.8, 10, 1, replyTo))
+                .reply() instanceof Bet.Accepted);
+        shard.awaitAssert(() -> {
+            assertTrue(bet.getState() instanceof Bet.OpenState open
+                    && open.marketConfirmed().orElse(false)
+                    && open.fundsConfirmed().orElse(false));
+            return null;
+        });
+        assertEquals(90, balance("winner-wallet"));
+
+        EventSourcedBehaviorTestKit.CommandResultWithReply<Bet.Command, Bet.Event, Bet.State, Bet.Response> settled =
+                bet.runCommand(replyTo -> new Bet.Settle(1, replyTo));
+        EventSourcedBehaviorTestKit.CommandResultWithReply<Bet.Command, Bet.Event, Bet.State, Bet.Response> resent =
+                bet.runCommand(replyTo -> new Bet.Settle(1, replyTo));
+
+        assertTrue(settled.reply() instanceof Bet.Accepted);
+        assertEquals(new Bet.Settling("winner"), settled.event());
+        assertTrue(resent.reply() instanceof Bet.RequestUnaccepted);
+        assertTrue(resent.hasNoEvents());
+        shard.awaitAssert(() -> {
+            assertTrue(bet.getState() instanceof Bet.ClosedState);
+            return null;
+        });
+        assertEquals(100, balance("winner-wallet"));
+    }
+}
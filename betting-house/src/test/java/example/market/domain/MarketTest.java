@@ -0,0 +1,108 @@
+package example.market.domain;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.persistence.testkit.javadsl.EventSourcedBehaviorTestKit;
+import example.SingleNodeCluster;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MarketTest {
+
+    // a window long enough for the updates of a test to be written by max-updates or a Close, not by the timer
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource(SingleNodeCluster.config(
+            "market.coalescing.window = 1h\n" +
+                    "market.coalescing.max-updates = 3"));
+
+    private static final Market.Odds OPENING_ODDS = new Market.Odds(1.8, 2.4, 3.1);
+
+    @BeforeClass
+    public static void join() {
+        SingleNodeCluster.join(testKit.system());
+    }
+
+    private EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> open(String marketId) {
+        EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> market =
+                EventSourcedBehaviorTestKit.create(testKit.system(), Market.create(marketId, true));
+        EventSourcedBehaviorTestKit.CommandResultWithReply<Market.Command, Market.Event, Market.State, Market.Response> opened =
+                market.runCommand(replyTo -> new Market.Open(
+                        new Market.Fixture("fixture-" + marketId, "home", "away"),
+                        OPENING_ODDS,
+                        OffsetDateTime.now(ZoneOffset.UTC),
+                        replyTo));
+        assertTrue(opened.reply() instanceof Market.Accepted);
+        return market;
+    }
+
+    @Test
+    public void acknowledgesAnUpdateThatChangesNothingWithoutWritingIt() {
+        EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> market = open("unchanged");
+
+        EventSourcedBehaviorTestKit.CommandResultWithReply<Market.Command, Market.Event, Market.State, Market.Response> result =
+                market.runCommand(replyTo ->
+                        new Market.Update(Optional.of(OPENING_ODDS), Optional.empty(), Optional.of(0), replyTo));
+
+        assertTrue(result.reply() instanceof Market.Accepted);
+        assertTrue(result.hasNoEvents());
+    }
+
+    @Test
+    public void writesTheCoalescedUpdatesAsOneEventOnceMaxUpdatesArrived() {
+        EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> market = open("max-updates");
+        TestProbe<Market.Response> first = testKit.createTestProbe();
+        TestProbe<Market.Response> second = testKit.createTestProbe();
+        TestProbe<Market.Response> third = testKit.createTestProbe();
+        Market.Odds lowered = new Market.Odds(1.5, 2.4, 3.1);
+        Market.Odds raised = new Market.Odds(1.6, 2.6, 3.1);
+
+        assertTrue(market.runCommand(new Market.Update(Optional.of(lowered), Optional.empty(), Optional.empty(), first.ref()))
+                .hasNoEvents());
+        assertTrue(market.runCommand(new Market.Update(Optional.empty(), Optional.empty(), Optional.of(2), second.ref()))
+                .hasNoEvents());
+        first.expectNoMessage();
+
+        EventSourcedBehaviorTestKit.CommandResult<Market.Command, Market.Event, Market.State> written =
+                market.runCommand(new Market.Update(Optional.of(raised), Optional.empty(), Optional.empty(), third.ref()));
+
+        assertEquals(List.of(new Market.Updated("max-updates", Optional.of(raised), Optional.of(2))),
+                written.events());
+        assertEquals(new Market.OpenState(new Market.Status("max-updates",
+                new Market.Fixture("fixture-max-updates", "home", "away"), raised, 2)), written.state());
+        first.expectMessageClass(Market.Accepted.class);
+        second.expectMessageClass(Market.Accepted.class);
+        third.expectMessageClass(Market.Accepted.class);
+    }
+
+    @Test
+    public void closesWithTheResultOfTheCoalescedUpdates() {
+        EventSourcedBehaviorTestKit<Market.Command, Market.Event, Market.State> market = open("close");
+        TestProbe<Market.Response> oddsUpdate = testKit.createTestProbe();
+        TestProbe<Market.Response> resultUpdate = testKit.createTestProbe();
+        Market.Odds lowered = new Market.Odds(1.5, 2.4, 3.1);
+
+        market.runCommand(new Market.Update(Optional.of(lowered), Optional.empty(), Optional.empty(), oddsUpdate.ref()));
+        market.runCommand(new Market.Update(Optional.empty(), Optional.empty(), Optional.of(2), resultUpdate.ref()));
+
+        EventSourcedBehaviorTestKit.CommandResultWithReply<Market.Command, Market.Event, Market.State, Market.Response> closed =
+                market.runCommand(Market.Close::new);
+
+        assertTrue(closed.reply() instanceof Market.Accepted);
+        assertEquals(2, closed.events().size());
+        assertEquals(new Market.Updated("close", Optional.of(lowered), Optional.of(2)), closed.events().get(0));
+        assertTrue(closed.events().get(1) instanceof Market.Closed event && event.result() == 2);
+        assertEquals(new Market.ClosedState(new Market.Status("close",
+                new Market.Fixture("fixture-close", "home", "away"), lowered, 2)), closed.state());
+        oddsUpdate.expectMessageClass(Market.Accepted.class);
+        resultUpdate.expectMessageClass(Market.Accepted.class);
+    }
+}
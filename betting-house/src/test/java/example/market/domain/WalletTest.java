@@ -0,0 +1,77 @@
+package example.market.domain;
+
+import akka.actor.testkit.typed.javadsl.TestKitJunitResource;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.persistence.testkit.javadsl.PersistenceTestKit;
+import example.SingleNodeCluster;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WalletTest {
+
+    @ClassRule
+    public static final TestKitJunitResource testKit = new TestKitJunitResource(SingleNodeCluster.config(""));
+
+    /**
+     * The first command is written alone, the next ones arrive while it's written and are checked together against
+     * the running balance, the rejected reservation in the middle of them.
+     */
+    @Test
+    public void checksTheCommandsOfAGroupInOrderAgainstTheRunningBalance() {
+        PersistenceTestKit journal = PersistenceTestKit.create(testKit.system());
+        ActorRef<Wallet.Command> wallet = testKit.spawn(Wallet.create("group", true));
+        TestProbe<Wallet.UpdatedResponse> add100 = testKit.createTestProbe();
+        TestProbe<Wallet.UpdatedResponse> reserve60 = testKit.createTestProbe();
+        TestProbe<Wallet.UpdatedResponse> reserve50 = testKit.createTestProbe();
+        TestProbe<Wallet.UpdatedResponse> add20 = testKit.createTestProbe();
+        TestProbe<Wallet.UpdatedResponse> reserve50Again = testKit.createTestProbe();
+        TestProbe<Wallet.Response> balance = testKit.createTestProbe();
+
+        wallet.tell(new Wallet.AddFunds(100, add100.ref()));
+        wallet.tell(new Wallet.ReserveFunds(60, reserve60.ref()));
+        wallet.tell(new Wallet.ReserveFunds(50, reserve50.ref()));
+        wallet.tell(new Wallet.AddFunds(20, add20.ref()));
+        wallet.tell(new Wallet.ReserveFunds(50, reserve50Again.ref()));
+
+        add100.expectMessageClass(Wallet.Accepted.class);
+        reserve60.expectMessageClass(Wallet.Accepted.class);
+        reserve50.expectMessageClass(Wallet.Rejected.class);
+        add20.expectMessageClass(Wallet.Accepted.class);
+        reserve50Again.expectMessageClass(Wallet.Accepted.class);
+
+        journal.expectNextPersisted("wallet|group", new Wallet.FundsAdded(100));
+        journal.expectNextPersisted("wallet|group", new Wallet.FundsReserved(60));
+        journal.expectNextPersisted("wallet|group", new Wallet.FundsReservationDenied(50));
+        journal.expectNextPersisted("wallet|group", new Wallet.FundsAdded(20));
+        journal.expectNextPersisted("wallet|group", new Wallet.FundsReserved(50));
+        journal.expectNothingPersisted("wallet|group");
+
+        wallet.tell(new Wallet.CheckFunds(balance.ref()));
+        assertEquals(new Wallet.CurrentBalance(10), balance.receiveMessage());
+    }
+
+    @Test
+    public void answersTheSameWithoutGroupCommit() {
+        ActorRef<Wallet.Command> wallet = testKit.spawn(Wallet.create("single", false));
+        TestProbe<Wallet.UpdatedResponse> replies = testKit.createTestProbe();
+        TestProbe<Wallet.Response> balance = testKit.createTestProbe();
+
+        wallet.tell(new Wallet.AddFunds(100, replies.ref()));
+        wallet.tell(new Wallet.ReserveFunds(60, replies.ref()));
+        wallet.tell(new Wallet.ReserveFunds(50, replies.ref()));
+        wallet.tell(new Wallet.AddFunds(20, replies.ref()));
+        wallet.tell(new Wallet.ReserveFunds(50, replies.ref()));
+
+        replies.expectMessageClass(Wallet.Accepted.class);
+        replies.expectMessageClass(Wallet.Accepted.class);
+        replies.expectMessageClass(Wallet.Rejected.class);
+        replies.expectMessageClass(Wallet.Accepted.class);
+        replies.expectMessageClass(Wallet.Accepted.class);
+
+        wallet.tell(new Wallet.CheckFunds(balance.ref()));
+        assertEquals(new Wallet.CurrentBalance(10), balance.receiveMessage());
+    }
+}
@@ -0,0 +1,112 @@
+package example.projection;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import example.SingleNodeCluster;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.MountableFile;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+/**
+ * {@link TagLayout} against Postgres in Docker, with the tables of {@code common-deployment/akka-projection.sql}.
+ * Each test checks a projection of its own.
+ */
+public class TagLayoutTest {
+
+    @ClassRule
+    public static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withCopyFileToContainer(MountableFile.forHostPath("common-deployment/akka-projection.sql"),
+                    "/docker-entrypoint-initdb.d/akka-projection.sql");
+
+    private static ActorTestKit testKit;
+
+    @BeforeClass
+    public static void start() {
+        testKit = ActorTestKit.create(SingleNodeCluster.config(String.format(
+                "jdbc-connection-settings {\n" +
+                        "  url = \"%s\"\n" +
+                        "  user = \"%s\"\n" +
+                        "  password = \"%s\"\n" +
+                        "}",
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())));
+    }
+
+    @AfterClass
+    public static void stop() {
+        testKit.shutdownTestKit();
+    }
+
+    private static List<String> tags(int size) {
+        return IntStream.range(0, size).mapToObj(i -> "bet-tag-" + i).collect(Collectors.toList());
+    }
+
+    private static void check(String projectionName, int size) {
+        TagLayout.check(testKit.system(), projectionName, tags(size), "sharding.bet.tags.size");
+    }
+
+    private static void storeOffsets(String projectionName, int... tags) throws Exception {
+        try (Connection connection = ReadSideDataSource.get(testKit.system()).acquire();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO akka_projection_offset_store " +
+                             "(projection_name, projection_key, current_offset, manifest, mergeable, last_updated) " +
+                             "VALUES (?, ?, '1', 'SEQ', false, 0)")) {
+            for (int tag : tags) {
+                statement.setString(1, projectionName);
+                statement.setString(2, "bet-tag-" + tag);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        }
+    }
+
+    private static int recordedTags(String projectionName) throws Exception {
+        try (Connection connection = ReadSideDataSource.get(testKit.system()).acquire();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT tags FROM projection_tags WHERE projection_name = ?")) {
+            statement.setString(1, projectionName);
+            try (ResultSet row = statement.executeQuery()) {
+                row.next();
+                return row.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void startsAgainOnSparseOffsetsWrittenWithTheSameCount() throws Exception {
+        storeOffsets("Sparse", 3, 17);
+
+        check("Sparse", 32);
+        check("Sparse", 32);
+
+        assertEquals(32, recordedTags("Sparse"));
+    }
+
+    @Test
+    public void refusesACountChangedAfterTheFirstStart() throws Exception {
+        check("Grown", 3);
+        storeOffsets("Grown", 0, 1, 2);
+
+        assertThrows(IllegalStateException.class, () -> check("Grown", 32));
+        assertEquals(3, recordedTags("Grown"));
+    }
+
+    @Test
+    public void refusesOffsetsOfTagsBeyondTheCount() throws Exception {
+        storeOffsets("Shrunk", 5, 35);
+
+        assertThrows(IllegalStateException.class, () -> check("Shrunk", 32));
+    }
+}
@@ -0,0 +1,191 @@
+package example.projection.to.db;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import example.SingleNodeCluster;
+import example.market.domain.Bet;
+import example.projection.dbconnection.QueryDSLJdbcSession;
+import example.projection.dbconnection.ReadSideDataSource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.MountableFile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link BetRepositoryImpl} against Postgres in Docker, with the tables of {@code common-deployment/bet-projection.sql}.
+ * Each test writes bets and markets of its own.
+ */
+public class BetRepositoryTest {
+
+    @ClassRule
+    public static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withCopyFileToContainer(MountableFile.forHostPath("common-deployment/bet-projection.sql"),
+                    "/docker-entrypoint-initdb.d/bet-projection.sql");
+
+    private static ActorTestKit testKit;
+
+    private final BetRepository repository = new BetRepositoryImpl();
+
+    @BeforeClass
+    public static void start() {
+        testKit = ActorTestKit.create(SingleNodeCluster.config(String.format(
+                "jdbc-connection-settings {\n" +
+                        "  url = \"%s\"\n" +
+                        "  user = \"%s\"\n" +
+                        "  password = \"%s\"\n" +
+                        "}",
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())));
+    }
+
+    @AfterClass
+    public static void stop() {
+        testKit.shutdownTestKit();
+    }
+
+    private interface Work<T> {
+        T apply(QueryDSLJdbcSession session) throws Exception;
+    }
+
+    private static <T> T inTransaction(Work<T> work) throws Exception {
+        QueryDSLJdbcSession session = new QueryDSLJdbcSession(ReadSideDataSource.get(testKit.system()));
+        try {
+            T result = work.apply(session);
+            session.commit();
+            return result;
+        } catch (Exception e) {
+            session.rollback();
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+
+    private Optional<BetView> bet(String betId) throws Exception {
+        return inTransaction(session -> repository.getBet(betId, session));
+    }
+
+    /**
+     * The stake per result of the market in market_stake_per_result.
+     */
+    private Map<Integer, Double> stakes(String marketId) throws Exception {
+        return inTransaction(session -> repository.getBetPerMarketTotalStake(marketId, session)).stream()
+                .collect(Collectors.toMap(StakePerResult::getResult, StakePerResult::getSum));
+    }
+
+    @Test
+    public void insertsABatchOfNewBets() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("batch-1", "wallet-1", "batch-market", 2.0, 10, 1),
+                    new Bet.Opened("batch-2", "wallet-2", "batch-market", 1.5, 20, 0)), session);
+            return null;
+        });
+
+        assertEquals(Optional.of(new BetView("batch-1", "wallet-1", "batch-market", 2.0, 10, 1, BetRepository.OPEN)),
+                bet("batch-1"));
+        assertEquals(Optional.of(new BetView("batch-2", "wallet-2", "batch-market", 1.5, 20, 0, BetRepository.OPEN)),
+                bet("batch-2"));
+    }
+
+    @Test
+    public void keepsTheLastOfTheSameBetInABatch() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("twice", "wallet-1", "twice-market", 2.0, 10, 1),
+                    new Bet.Opened("twice", "wallet-1", "twice-market", 2.5, 30, 2)), session);
+            return null;
+        });
+
+        assertEquals(Optional.of(new BetView("twice", "wallet-1", "twice-market", 2.5, 30, 2, BetRepository.OPEN)),
+                bet("twice"));
+    }
+
+    @Test
+    public void updatesTheBetsAlreadyWrittenWithoutTouchingTheirStatus() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(new Bet.Opened("replayed", "wallet-1", "replayed-market", 2.0, 10, 1)), session);
+            repository.updateStatuses(Map.of("replayed", "settled"), session);
+            return null;
+        });
+
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("replayed", "wallet-1", "replayed-market", 3.0, 15, 0),
+                    new Bet.Opened("replayed-new", "wallet-2", "replayed-market", 1.5, 20, 0)), session);
+            return null;
+        });
+
+        assertEquals(Optional.of(new BetView("replayed", "wallet-1", "replayed-market", 3.0, 15, 0, "settled")),
+                bet("replayed"));
+        assertEquals(Optional.of(new BetView("replayed-new", "wallet-2", "replayed-market", 1.5, 20, 0, BetRepository.OPEN)),
+                bet("replayed-new"));
+    }
+
+    @Test
+    public void readsTheOddsOfABetAsTheEntityHasThem() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(new Bet.Opened("exact-1", "wallet-1", "exact-market", 1.8, 10, 1)), session);
+            repository.addBet("exact-2", "wallet-2", "exact-market", 2.35, 20, 0, session);
+            return null;
+        });
+
+        assertEquals(1.8, bet("exact-1").orElseThrow().odds(), 0.0);
+        assertEquals(2.35, bet("exact-2").orElseThrow().odds(), 0.0);
+    }
+
+    @Test
+    public void addsTheStakeOfEachBetToItsMarketAndResult() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("stake-1", "wallet-1", "stake-market", 2.0, 10, 1),
+                    new Bet.Opened("stake-2", "wallet-2", "stake-market", 1.5, 20, 1)), session);
+            repository.addBet("stake-3", "wallet-3", "stake-market", 3.0, 5, 0, session);
+            return null;
+        });
+
+        assertEquals(Map.of(1, 50.0, 0, 15.0), stakes("stake-market"));
+    }
+
+    @Test
+    public void movesTheStakeOfABetWrittenAgainWithAnotherResult() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("moved-1", "wallet-1", "moved-market", 2.0, 10, 1),
+                    new Bet.Opened("moved-2", "wallet-2", "moved-market", 1.5, 20, 1)), session);
+            return null;
+        });
+
+        inTransaction(session -> {
+            repository.addBets(List.of(new Bet.Opened("moved-1", "wallet-1", "moved-market", 2.5, 4, 2)), session);
+            repository.addBet("moved-2", "wallet-2", "moved-market", 1.5, 20, 0, session);
+            return null;
+        });
+
+        assertEquals(Map.of(1, 0.0, 2, 10.0, 0, 30.0), stakes("moved-market"));
+    }
+
+    @Test
+    public void keepsTheSameTotalsAsARebuild() throws Exception {
+        inTransaction(session -> {
+            repository.addBets(List.of(
+                    new Bet.Opened("rebuilt-1", "wallet-1", "rebuilt-market", 2.0, 10, 1),
+                    new Bet.Opened("rebuilt-2", "wallet-2", "rebuilt-market", 1.5, 20, 0),
+                    new Bet.Opened("rebuilt-1", "wallet-1", "rebuilt-market", 2.0, 12, 1)), session);
+            return null;
+        });
+        Map<Integer, Double> incremental = stakes("rebuilt-market");
+
+        inTransaction(session -> repository.rebuildMarketStakePerResult(session));
+
+        assertEquals(Map.of(1, 24.0, 0, 30.0), incremental);
+        assertEquals(incremental, stakes("rebuilt-market"));
+    }
+}